@@ -0,0 +1,108 @@
+package com.messenger.cache;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Binary Redis value serializer for caches whose value type is known up front.
+ *
+ * Values are written as Smile (binary JSON) against a fixed target type, so no
+ * class metadata is stored, and repeated property names are back-referenced.
+ * Payloads above the threshold are LZ4-compressed.
+ *
+ * Layout: one format byte, then either the Smile document ({@link #FORMAT_PLAIN})
+ * or the original length as an int followed by the LZ4 block ({@link #FORMAT_LZ4}).
+ */
+public class SmileRedisSerializer implements RedisSerializer<Object> {
+
+    static final byte FORMAT_PLAIN = 0x01;
+    static final byte FORMAT_LZ4 = 0x02;
+
+    private static final LZ4Factory LZ4 = LZ4Factory.fastestInstance();
+
+    private final ObjectMapper mapper;
+    private final JavaType type;
+    private final int compressionThreshold;
+    private final LZ4Compressor compressor = LZ4.fastCompressor();
+    private final LZ4FastDecompressor decompressor = LZ4.fastDecompressor();
+
+    /**
+     * @param compressionThreshold payload size in bytes from which LZ4 is applied; 0 or less disables compression
+     */
+    public SmileRedisSerializer(JavaType type, int compressionThreshold) {
+        this.type = type;
+        this.compressionThreshold = compressionThreshold;
+        this.mapper = createMapper();
+    }
+
+    public static ObjectMapper createMapper() {
+        SmileFactory factory = SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_NAMES)
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build();
+        return new ObjectMapper(factory)
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        try {
+            byte[] smile = mapper.writerFor(type).writeValueAsBytes(value);
+            if (compressionThreshold <= 0 || smile.length < compressionThreshold) {
+                return ByteBuffer.allocate(1 + smile.length)
+                        .put(FORMAT_PLAIN)
+                        .put(smile)
+                        .array();
+            }
+
+            byte[] out = new byte[5 + compressor.maxCompressedLength(smile.length)];
+            ByteBuffer.wrap(out).put(FORMAT_LZ4).putInt(smile.length);
+            int compressed = compressor.compress(smile, 0, smile.length, out, 5);
+            return Arrays.copyOf(out, 5 + compressed);
+        } catch (Exception e) {
+            throw new SerializationException("Could not write cache value as " + type, e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            switch (bytes[0]) {
+                case FORMAT_PLAIN:
+                    return mapper.readValue(bytes, 1, bytes.length - 1, type);
+                case FORMAT_LZ4:
+                    int length = ByteBuffer.wrap(bytes, 1, 4).getInt();
+                    byte[] smile = decompressor.decompress(bytes, 5, length);
+                    return mapper.readValue(smile, type);
+                default:
+                    // e.g. a JSON entry written before the cache was switched to binary
+                    throw new SerializationException("Unknown cache value format: " + bytes[0]);
+            }
+        } catch (SerializationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SerializationException("Could not read cache value as " + type, e);
+        }
+    }
+}
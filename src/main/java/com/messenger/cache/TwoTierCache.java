@@ -0,0 +1,276 @@
+package com.messenger.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cache with a bounded in-heap L1 (Caffeine) in front of a shared L2 (Redis).
+ *
+ * Reads go to L1 first and fill it from L2 on a miss. Writes and evictions go to
+ * both tiers and are broadcast so other nodes drop their L1 copies. L1 keys are
+ * the string form of the cache key, the same form RedisCacheManager uses, so keys
+ * received from other nodes match local entries.
+ *
+ * L1 holds values in encoded form (the L2 serializer) and decodes a fresh copy on
+ * every hit, so callers never share a mutable DTO, same as with Redis alone.
+ *
+ * Every invalidation bumps a generation counter of the key's stripe. A fill from
+ * L2 remembers the generation before reading L2 and is dropped if it changed in the
+ * meantime: an evict that races with the fill cannot leave the old value in L1.
+ */
+public class TwoTierCache implements Cache {
+
+    private static final int GENERATION_STRIPES = 64;
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> local;
+    private final Cache remote;
+    private final ValueCodec codec;
+    private final BatchEvictor batchEvictor;
+    private final InvalidationPublisher publisher;
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    private final Counter l1Hits;
+    private final Counter l1Misses;
+    private final Counter l2Hits;
+    private final Counter l2Misses;
+
+    public TwoTierCache(String name,
+                        com.github.benmanes.caffeine.cache.Cache<String, Object> local,
+                        Cache remote,
+                        ValueCodec codec,
+                        BatchEvictor batchEvictor,
+                        InvalidationPublisher publisher,
+                        MeterRegistry meterRegistry) {
+        this.name = name;
+        this.local = local;
+        this.remote = remote;
+        this.codec = codec;
+        this.batchEvictor = batchEvictor != null ? batchEvictor : keys -> keys.forEach(remote::evict);
+        this.publisher = publisher;
+
+        this.l1Hits = tierCounter(meterRegistry, "l1", "hit");
+        this.l1Misses = tierCounter(meterRegistry, "l1", "miss");
+        this.l2Hits = tierCounter(meterRegistry, "l2", "hit");
+        this.l2Misses = tierCounter(meterRegistry, "l2", "miss");
+        Gauge.builder("messenger.cache.l1.size", local, c -> c.estimatedSize())
+                .tag("cache", name)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String localKey = key.toString();
+        Object stored = local.getIfPresent(localKey);
+        if (stored != null) {
+            l1Hits.increment();
+            return new SimpleValueWrapper(codec.decode(stored));
+        }
+        l1Misses.increment();
+
+        long generation = generation(localKey);
+        ValueWrapper wrapper = remote.get(key);
+        if (wrapper != null && wrapper.get() != null) {
+            l2Hits.increment();
+            fill(localKey, generation, wrapper.get());
+        } else {
+            l2Misses.increment();
+        }
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException(
+                    "Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        String localKey = key.toString();
+        long generation = generation(localKey);
+        T value = remote.get(key, valueLoader);
+        if (value != null) {
+            fill(localKey, generation, value);
+        }
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        remote.put(key, value);
+        String localKey = key.toString();
+        bump(localKey);
+        if (value != null) {
+            local.put(localKey, codec.encode(value));
+        } else {
+            local.invalidate(localKey);
+        }
+        publisher.publish(name, List.of(localKey));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = remote.putIfAbsent(key, value);
+        // Whatever L2 holds now is the winner, drop possibly stale copies everywhere
+        evictLocal(List.of(key.toString()));
+        publisher.publish(name, List.of(key.toString()));
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        evictLocal(List.of(key.toString()));
+        publisher.publish(name, List.of(key.toString()));
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        boolean present = remote.evictIfPresent(key);
+        evictLocal(List.of(key.toString()));
+        publisher.publish(name, List.of(key.toString()));
+        return present;
+    }
+
+    /**
+     * Evicts several keys with one L2 command and a single invalidation broadcast.
+     */
+    public void evictAll(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        batchEvictor.evict(keys);
+        evictLocal(keys);
+        publisher.publish(name, new ArrayList<>(keys));
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        clearLocal();
+        publisher.publish(name, null);
+    }
+
+    @Override
+    public boolean invalidate() {
+        boolean invalidated = remote.invalidate();
+        clearLocal();
+        publisher.publish(name, null);
+        return invalidated;
+    }
+
+    /**
+     * Drops L1 entries only. Called for invalidations received from other nodes.
+     */
+    void evictLocal(Collection<String> keys) {
+        keys.forEach(this::bump);
+        local.invalidateAll(keys);
+    }
+
+    void clearLocal() {
+        for (int i = 0; i < GENERATION_STRIPES; i++) {
+            generations.incrementAndGet(i);
+        }
+        local.invalidateAll();
+    }
+
+    /**
+     * Stores a value read from L2 unless the key was invalidated since the read
+     * started. The check and the store are atomic per key with respect to
+     * {@link #evictLocal}, which bumps the generation before removing the entry.
+     */
+    private void fill(String localKey, long generation, Object value) {
+        Object stored = codec.encode(value);
+        local.asMap().compute(localKey,
+                (k, current) -> generations.get(stripe(k)) == generation ? stored : current);
+    }
+
+    private long generation(String localKey) {
+        return generations.get(stripe(localKey));
+    }
+
+    private void bump(String localKey) {
+        generations.incrementAndGet(stripe(localKey));
+    }
+
+    private static int stripe(String localKey) {
+        return (localKey.hashCode() & 0x7fffffff) % GENERATION_STRIPES;
+    }
+
+    private Counter tierCounter(MeterRegistry meterRegistry, String tier, String result) {
+        return Counter.builder("messenger.cache.gets")
+                .tag("cache", name)
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Converts values to the form kept in L1 and back. Decoding must return a new
+     * instance each time unless the values are immutable.
+     */
+    public interface ValueCodec {
+        ValueCodec IDENTITY = new ValueCodec() {
+            @Override
+            public Object encode(Object value) {
+                return value;
+            }
+
+            @Override
+            public Object decode(Object stored) {
+                return stored;
+            }
+        };
+
+        Object encode(Object value);
+
+        Object decode(Object stored);
+    }
+
+    /**
+     * Removes several keys from L2 at once.
+     */
+    @FunctionalInterface
+    public interface BatchEvictor {
+        void evict(Collection<String> keys);
+    }
+
+    /**
+     * Broadcasts invalidations to other nodes. Null keys mean the whole cache.
+     */
+    @FunctionalInterface
+    public interface InvalidationPublisher {
+        void publish(String cacheName, List<String> keys);
+    }
+}
@@ -0,0 +1,169 @@
+package com.messenger.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * CacheManager that wraps every cache of a Redis-backed manager into a
+ * {@link TwoTierCache} with a per-node Caffeine L1.
+ *
+ * Invalidations are published to a Redis pub/sub channel and applied to the
+ * L1 of every other node; messages sent by this node are ignored on receipt.
+ * L1 entries also expire after a short TTL, which bounds staleness if a
+ * message is lost.
+ */
+@Slf4j
+public class TwoTierCacheManager implements CacheManager, MessageListener {
+
+    private final CacheManager remoteCacheManager;
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final String channel;
+    private final long localMaxSize;
+    private final Duration localTtl;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ConcurrentMap<String, TwoTierCache> caches = new ConcurrentHashMap<>();
+
+    public TwoTierCacheManager(CacheManager remoteCacheManager,
+                               StringRedisTemplate redisTemplate,
+                               MeterRegistry meterRegistry,
+                               String channel,
+                               long localMaxSize,
+                               Duration localTtl) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.channel = channel;
+        this.localMaxSize = localMaxSize;
+        this.localTtl = localTtl;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        TwoTierCache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache remote = remoteCacheManager.getCache(name);
+        if (remote == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, n -> new TwoTierCache(n,
+                Caffeine.newBuilder()
+                        .maximumSize(localMaxSize)
+                        .expireAfterWrite(localTtl)
+                        .build(),
+                remote,
+                codecFor(remote),
+                batchEvictorFor(n, remote),
+                this::publish,
+                meterRegistry));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return remoteCacheManager.getCacheNames();
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            InvalidationMessage invalidation = objectMapper.readValue(message.getBody(), InvalidationMessage.class);
+            if (nodeId.equals(invalidation.getOrigin())) {
+                return;
+            }
+            TwoTierCache cache = caches.get(invalidation.getCache());
+            if (cache == null) {
+                return;
+            }
+            if (invalidation.getKeys() == null) {
+                cache.clearLocal();
+            } else {
+                cache.evictLocal(invalidation.getKeys());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to apply cache invalidation: {}", e.getMessage());
+        }
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    /**
+     * L1 keeps Redis values in their serialized form, so every hit yields a fresh copy.
+     */
+    private static TwoTierCache.ValueCodec codecFor(Cache remote) {
+        if (!(remote instanceof RedisCache redisCache)) {
+            return TwoTierCache.ValueCodec.IDENTITY;
+        }
+        RedisSerializationContext.SerializationPair<Object> pair =
+                redisCache.getCacheConfiguration().getValueSerializationPair();
+        return new TwoTierCache.ValueCodec() {
+            @Override
+            public Object encode(Object value) {
+                ByteBuffer buffer = pair.write(value);
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                return bytes;
+            }
+
+            @Override
+            public Object decode(Object stored) {
+                return pair.read(ByteBuffer.wrap((byte[]) stored));
+            }
+        };
+    }
+
+    /**
+     * Evicts Redis keys with a single UNLINK instead of one DEL per key.
+     */
+    private TwoTierCache.BatchEvictor batchEvictorFor(String name, Cache remote) {
+        if (!(remote instanceof RedisCache redisCache)) {
+            return null;
+        }
+        String prefix = redisCache.getCacheConfiguration().getKeyPrefixFor(name);
+        return keys -> redisTemplate.unlink(keys.stream().map(key -> prefix + key).toList());
+    }
+
+    private void publish(String cacheName, List<String> keys) {
+        try {
+            redisTemplate.convertAndSend(channel,
+                    objectMapper.writeValueAsString(new InvalidationMessage(nodeId, cacheName, keys)));
+        } catch (Exception e) {
+            // Other nodes fall back to the L1 TTL
+            log.warn("Failed to publish cache invalidation for {}: {}", cacheName, e.getMessage());
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class InvalidationMessage {
+        private String origin;
+        private String cache;
+        private List<String> keys;  // null clears the whole cache
+    }
+}
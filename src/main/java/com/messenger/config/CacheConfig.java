@@ -1,6 +1,12 @@
 package com.messenger.config;
 
-import org.springframework.cache.CacheManager;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.messenger.cache.SmileRedisSerializer;
+import com.messenger.cache.TwoTierCacheManager;
+import com.messenger.dto.ChatDTOs;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.CachingConfigurer;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.interceptor.CacheErrorHandler;
@@ -10,24 +16,69 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
- * Конфигурация кэширования с Redis
+ * Конфигурация кэширования: Caffeine (L1) + Redis (L2)
  */
 @Configuration
 @EnableCaching
 public class CacheConfig implements CachingConfigurer {
 
+    @Value("${cache.local.max-size:10000}")
+    private long localMaxSize;
+
+    @Value("${cache.local.ttl:60s}")
+    private Duration localTtl;
+
+    @Value("${cache.invalidation-channel:messenger:cache:invalidate}")
+    private String invalidationChannel;
+
+    @Value("${cache.binary.caches:}")
+    private Set<String> binaryCaches;
+
+    @Value("${cache.binary.compression-threshold:1024}")
+    private int compressionThreshold;
+
+    /**
+     * Двухуровневый кэш: локальный Caffeine (L1) перед Redis (L2)
+     */
+    @Bean
+    public TwoTierCacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                            StringRedisTemplate redisTemplate,
+                                            MeterRegistry meterRegistry) {
+        return new TwoTierCacheManager(redisCacheManager(connectionFactory), redisTemplate, meterRegistry,
+                invalidationChannel, localMaxSize, localTtl);
+    }
+
     /**
-     * Конфигурация кэш менеджера
+     * Подписка на инвалидации L1 от других узлов. Остальные межузловые каналы
+     * (например, отзыв токенов) компоненты подписывают на этот же контейнер сами.
      */
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory connectionFactory) {
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                           TwoTierCacheManager cacheManager) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(cacheManager, new ChannelTopic(cacheManager.getChannel()));
+        return container;
+    }
+
+    /**
+     * Конфигурация Redis кэш менеджера (L2)
+     */
+    private RedisCacheManager redisCacheManager(RedisConnectionFactory connectionFactory) {
         RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig()
                 .entryTtl(Duration.ofMinutes(10)) // TTL по умолчанию - 10 минут
                 .serializeKeysWith(RedisSerializationContext.SerializationPair
@@ -36,19 +87,43 @@ public class CacheConfig implements CachingConfigurer {
                         .fromSerializer(new GenericJackson2JsonRedisSerializer()))
                 .disableCachingNullValues();
 
-        return RedisCacheManager.builder(connectionFactory)
+        Map<String, RedisCacheConfiguration> cacheConfigs = new HashMap<>();
+        // userChats и chatById инвалидируются событиями (ChatCacheInvalidator), поэтому TTL длинный
+        cacheConfigs.put("userChats", config.entryTtl(Duration.ofHours(1)));        // Чаты - 1 час
+        cacheConfigs.put("chatById", config.entryTtl(Duration.ofHours(1)));         // Чат - 1 час
+        cacheConfigs.put("chatMessages", config.entryTtl(Duration.ofMinutes(2)));   // Сообщения - 2 минуты
+        cacheConfigs.put("userDevices", config.entryTtl(Duration.ofMinutes(10)));   // Устройства - 10 минут
+        cacheConfigs.put("userProfile", config.entryTtl(Duration.ofHours(1)));      // Профиль - 1 час
+        cacheConfigs.put("webrtcConfig", config.entryTtl(Duration.ofMinutes(30)));  // WebRTC конфиг - 30 минут
+
+        // Бинарная сериализация (Smile + LZ4) для выбранных кэшей с известным типом значения
+        Map<String, JavaType> valueTypes = binaryValueTypes();
+        for (String cacheName : binaryCaches) {
+            JavaType type = valueTypes.get(cacheName);
+            if (type == null) {
+                throw new IllegalStateException("No value type registered for binary cache " + cacheName);
+            }
+            cacheConfigs.put(cacheName, cacheConfigs.getOrDefault(cacheName, config)
+                    .serializeValuesWith(RedisSerializationContext.SerializationPair
+                            .fromSerializer(new SmileRedisSerializer(type, compressionThreshold))));
+        }
+
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
                 .cacheDefaults(config)
-                .withCacheConfiguration("userChats", 
-                        config.entryTtl(Duration.ofMinutes(5))) // Чаты - 5 минут
-                .withCacheConfiguration("chatMessages", 
-                        config.entryTtl(Duration.ofMinutes(2))) // Сообщения - 2 минуты
-                .withCacheConfiguration("userDevices", 
-                        config.entryTtl(Duration.ofMinutes(10))) // Устройства - 10 минут
-                .withCacheConfiguration("userProfile", 
-                        config.entryTtl(Duration.ofHours(1))) // Профиль - 1 час
-                .withCacheConfiguration("webrtcConfig", 
-                        config.entryTtl(Duration.ofMinutes(30))) // WebRTC конфиг - 30 минут
+                .withInitialCacheConfigurations(cacheConfigs)
                 .build();
+        redisCacheManager.afterPropertiesSet();
+        return redisCacheManager;
+    }
+
+    /**
+     * Типы значений кэшей, которые можно переключить на бинарный формат
+     */
+    private Map<String, JavaType> binaryValueTypes() {
+        TypeFactory typeFactory = TypeFactory.defaultInstance();
+        return Map.of(
+                "userChats", typeFactory.constructCollectionType(List.class, ChatDTOs.ChatDTO.class),
+                "chatById", typeFactory.constructType(ChatDTOs.ChatDTO.class));
     }
 
     /**
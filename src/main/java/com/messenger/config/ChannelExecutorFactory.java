@@ -0,0 +1,150 @@
+package com.messenger.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Builds the executors of the STOMP channels from websocket.executor.* settings.
+ *
+ * The returned executors are handed to Spring's ChannelRegistration, which exposes
+ * them as beans, so their lifecycle (initialize/shutdown) is managed by the context.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChannelExecutorFactory {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${websocket.executor.mode:POOL}")
+    private ChannelTaskExecutor.ExecutorMode mode;
+
+    @Value("${websocket.executor.inbound.core-size:8}")
+    private int inboundCoreSize;
+
+    @Value("${websocket.executor.inbound.max-size:32}")
+    private int inboundMaxSize;
+
+    @Value("${websocket.executor.inbound.queue-capacity:1000}")
+    private int inboundQueueCapacity;
+
+    @Value("${websocket.executor.fast-lane.core-size:4}")
+    private int fastLaneCoreSize;
+
+    @Value("${websocket.executor.fast-lane.max-size:8}")
+    private int fastLaneMaxSize;
+
+    @Value("${websocket.executor.fast-lane.queue-capacity:1000}")
+    private int fastLaneQueueCapacity;
+
+    @Value("${websocket.executor.fast-lane.destinations:/app/webrtc.,/app/chat.typing}")
+    private List<String> fastLaneDestinations;
+
+    @Value("${websocket.executor.outbound.core-size:8}")
+    private int outboundCoreSize;
+
+    @Value("${websocket.executor.outbound.max-size:32}")
+    private int outboundMaxSize;
+
+    @Value("${websocket.executor.outbound.queue-capacity:1000}")
+    private int outboundQueueCapacity;
+
+    @Value("${websocket.executor.broker.enabled:false}")
+    private boolean brokerEnabled;
+
+    @Value("${websocket.executor.broker.core-size:4}")
+    private int brokerCoreSize;
+
+    @Value("${websocket.executor.broker.max-size:16}")
+    private int brokerMaxSize;
+
+    @Value("${websocket.executor.broker.queue-capacity:1000}")
+    private int brokerQueueCapacity;
+
+    @Value("${websocket.executor.keep-alive-seconds:60}")
+    private int keepAliveSeconds;
+
+    /**
+     * Executor for frames coming from clients, with a separate fast lane for
+     * latency-critical destinations.
+     */
+    public ChannelTaskExecutor inbound() {
+        SimpleAsyncTaskExecutor virtual = virtualExecutor("ws-in-");
+        ThreadPoolTaskExecutor fastLane = null;
+        if (virtual == null && !fastLaneDestinations.isEmpty()) {
+            fastLane = pool(fastLaneCoreSize, fastLaneMaxSize, fastLaneQueueCapacity);
+        }
+        ChannelTaskExecutor executor = new ChannelTaskExecutor("clientInbound", fastLane,
+                fastLaneDestinations, virtual, meterRegistry);
+        configure(executor, virtual, inboundCoreSize, inboundMaxSize, inboundQueueCapacity);
+        log.info("clientInbound executor: mode={}, pool={}/{}, fast lane={}",
+                virtual != null ? ChannelTaskExecutor.ExecutorMode.VIRTUAL : ChannelTaskExecutor.ExecutorMode.POOL,
+                inboundCoreSize, inboundMaxSize, fastLane != null ? fastLaneDestinations : "off");
+        return executor;
+    }
+
+    public ChannelTaskExecutor outbound() {
+        SimpleAsyncTaskExecutor virtual = virtualExecutor("ws-out-");
+        ChannelTaskExecutor executor = new ChannelTaskExecutor("clientOutbound", null, null, virtual, meterRegistry);
+        configure(executor, virtual, outboundCoreSize, outboundMaxSize, outboundQueueCapacity);
+        return executor;
+    }
+
+    /**
+     * @return executor for the broker channel, or null to keep it synchronous (Spring default)
+     */
+    public ChannelTaskExecutor broker() {
+        if (!brokerEnabled) {
+            return null;
+        }
+        SimpleAsyncTaskExecutor virtual = virtualExecutor("ws-broker-");
+        ChannelTaskExecutor executor = new ChannelTaskExecutor("broker", null, null, virtual, meterRegistry);
+        configure(executor, virtual, brokerCoreSize, brokerMaxSize, brokerQueueCapacity);
+        return executor;
+    }
+
+    private void configure(ThreadPoolTaskExecutor executor, SimpleAsyncTaskExecutor virtual,
+                           int coreSize, int maxSize, int queueCapacity) {
+        if (virtual != null) {
+            // All work goes to virtual threads, the pool itself stays idle
+            coreSize = 1;
+            maxSize = 1;
+        }
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(Math.max(coreSize, maxSize));
+        executor.setQueueCapacity(queueCapacity);
+        executor.setKeepAliveSeconds(keepAliveSeconds);
+        executor.setAllowCoreThreadTimeOut(true);
+    }
+
+    private ThreadPoolTaskExecutor pool(int coreSize, int maxSize, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        configure(executor, null, coreSize, maxSize, queueCapacity);
+        return executor;
+    }
+
+    /**
+     * @return virtual-thread executor, or null in POOL mode or when the JVM has no virtual threads
+     */
+    private SimpleAsyncTaskExecutor virtualExecutor(String threadNamePrefix) {
+        if (mode != ChannelTaskExecutor.ExecutorMode.VIRTUAL) {
+            return null;
+        }
+        try {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+            executor.setVirtualThreads(true);
+            return executor;
+        } catch (UnsupportedOperationException e) {
+            log.warn("Virtual threads are not available on Java {}, falling back to POOL mode",
+                    System.getProperty("java.version"));
+            return null;
+        }
+    }
+}
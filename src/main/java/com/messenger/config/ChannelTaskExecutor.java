@@ -0,0 +1,157 @@
+package com.messenger.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor of a STOMP message channel (clientInbound, clientOutbound or broker).
+ *
+ * Spring only accepts a ThreadPoolTaskExecutor for channel registration, so routing
+ * is done by overriding {@link #execute(Runnable)}:
+ * <ul>
+ *   <li>messages whose destination starts with one of the fast lane prefixes
+ *       (WebRTC signaling, typing) run on a separate small pool and are never
+ *       queued behind DB-bound handlers such as /app/chat.send;</li>
+ *   <li>in {@link ExecutorMode#VIRTUAL} mode every task runs on its own virtual
+ *       thread (Java 21+), a blocked handler then costs no platform thread.</li>
+ * </ul>
+ *
+ * Each lane exports in-flight, queued and rejected task metrics tagged with the
+ * channel name.
+ */
+@Slf4j
+public class ChannelTaskExecutor extends ThreadPoolTaskExecutor {
+
+    static final String LANE_DEFAULT = "default";
+    static final String LANE_FAST = "fast";
+
+    private final String channel;
+    private final List<String> fastLanePrefixes;
+    private final ThreadPoolTaskExecutor fastLanePool;
+    private final SimpleAsyncTaskExecutor virtualExecutor;
+
+    private final AtomicInteger defaultInFlight = new AtomicInteger();
+    private final AtomicInteger fastInFlight = new AtomicInteger();
+    private final Counter defaultRejected;
+    private final Counter fastRejected;
+
+    /**
+     * @param fastLanePool     pool for latency-critical destinations, null to disable the fast lane
+     * @param fastLanePrefixes destination prefixes routed to the fast lane
+     * @param virtualExecutor  executor for virtual-thread mode, null to use the pools
+     */
+    public ChannelTaskExecutor(String channel,
+                               ThreadPoolTaskExecutor fastLanePool,
+                               List<String> fastLanePrefixes,
+                               SimpleAsyncTaskExecutor virtualExecutor,
+                               MeterRegistry meterRegistry) {
+        this.channel = channel;
+        this.fastLanePool = fastLanePool;
+        this.fastLanePrefixes = fastLanePrefixes != null ? List.copyOf(fastLanePrefixes) : List.of();
+        this.virtualExecutor = virtualExecutor;
+
+        this.defaultRejected = registerLane(meterRegistry, LANE_DEFAULT, defaultInFlight, this);
+        this.fastRejected = fastLanePool != null
+                ? registerLane(meterRegistry, LANE_FAST, fastInFlight, fastLanePool)
+                : defaultRejected;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        boolean fast = fastLanePool != null && isFastLane(task);
+        AtomicInteger inFlight = fast ? fastInFlight : defaultInFlight;
+
+        Runnable tracked = () -> {
+            try {
+                task.run();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        };
+
+        inFlight.incrementAndGet();
+        try {
+            if (virtualExecutor != null) {
+                virtualExecutor.execute(tracked);
+            } else if (fast) {
+                fastLanePool.execute(tracked);
+            } else {
+                super.execute(tracked);
+            }
+        } catch (TaskRejectedException e) {
+            inFlight.decrementAndGet();
+            (fast ? fastRejected : defaultRejected).increment();
+            throw e;
+        }
+    }
+
+    @Override
+    public void initialize() {
+        super.initialize();
+        if (fastLanePool != null) {
+            fastLanePool.setThreadNamePrefix(getThreadNamePrefix() + "fast-");
+            fastLanePool.initialize();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        if (fastLanePool != null) {
+            fastLanePool.shutdown();
+        }
+        if (virtualExecutor != null) {
+            virtualExecutor.close();
+        }
+        super.shutdown();
+    }
+
+    boolean isFastLane(Runnable task) {
+        if (!(task instanceof MessageHandlingRunnable handlingRunnable)) {
+            return false;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(handlingRunnable.getMessage().getHeaders());
+        if (destination == null) {
+            return false;
+        }
+        for (String prefix : fastLanePrefixes) {
+            if (destination.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Counter registerLane(MeterRegistry meterRegistry, String lane,
+                                 AtomicInteger inFlight, ThreadPoolTaskExecutor pool) {
+        Gauge.builder("messenger.websocket.channel.in-flight", inFlight, AtomicInteger::get)
+                .tag("channel", channel)
+                .tag("lane", lane)
+                .description("Tasks submitted to the channel executor and not yet finished")
+                .register(meterRegistry);
+        Gauge.builder("messenger.websocket.channel.queued", pool, p -> virtualExecutor != null ? 0 : p.getQueueSize())
+                .tag("channel", channel)
+                .tag("lane", lane)
+                .description("Tasks waiting for a pool thread")
+                .register(meterRegistry);
+        return Counter.builder("messenger.websocket.channel.rejected")
+                .tag("channel", channel)
+                .tag("lane", lane)
+                .description("Tasks rejected because the pool and its queue were full")
+                .register(meterRegistry);
+    }
+
+    public enum ExecutorMode {
+        POOL,     // Bounded platform thread pools
+        VIRTUAL   // One virtual thread per task, requires Java 21+
+    }
+}
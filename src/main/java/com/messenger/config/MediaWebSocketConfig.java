@@ -0,0 +1,34 @@
+package com.messenger.config;
+
+import com.messenger.controller.MediaWebSocketHandler;
+import com.messenger.security.JwtHandshakeInterceptor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/**
+ * Raw WebSocket endpoint for binary video frames, alongside the STOMP endpoint.
+ */
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "websocket.media.enabled", havingValue = "true", matchIfMissing = true)
+public class MediaWebSocketConfig implements WebSocketConfigurer {
+
+    private final MediaWebSocketHandler mediaWebSocketHandler;
+    private final JwtHandshakeInterceptor jwtHandshakeInterceptor;
+
+    @Value("${websocket.media.path:/ws-media}")
+    private String path;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(mediaWebSocketHandler, path)
+                .addInterceptors(jwtHandshakeInterceptor)
+                .setAllowedOriginPatterns("*");
+    }
+}
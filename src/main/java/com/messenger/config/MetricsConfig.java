@@ -0,0 +1,21 @@
+package com.messenger.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Конфигурация метрик Micrometer
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Включает поддержку @Timed на методах сервисов
+     */
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+}
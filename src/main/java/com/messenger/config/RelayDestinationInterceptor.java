@@ -0,0 +1,85 @@
+package com.messenger.config;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+
+/**
+ * Rewrites broker destinations into the form the RabbitMQ STOMP plugin accepts.
+ *
+ * RabbitMQ maps "/topic/{key}" and "/queue/{name}" directly onto a routing key or
+ * queue name and rejects extra '/' segments, while the application (and its clients)
+ * use hierarchical destinations like "/topic/chat/{id}/typing". Segments after the
+ * prefix are joined with '.' instead, which is also the word separator of the
+ * amq.topic exchange: "/topic/chat/{id}/typing" becomes "/topic/chat.{id}.typing".
+ *
+ * Installed on both the client inbound channel (SUBSCRIBE/SEND coming from clients)
+ * and the broker channel (messages sent through SimpMessagingTemplate and resolved
+ * user destinations), so both sides always agree on the name.
+ *
+ * A subscription to a user destination resolves to a queue per session
+ * ("/queue/errors-user{sessionId}"). RabbitMQ declares "/queue/" destinations durable
+ * and never deletes them, so every session would leave its queues behind; such
+ * subscriptions are marked auto-delete and non-durable, and the queue goes away with
+ * its last subscriber.
+ */
+public class RelayDestinationInterceptor implements ChannelInterceptor {
+
+    private static final String[] PREFIXES = {"/topic/", "/queue/"};
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        String mapped = toRelayDestination(destination);
+        boolean renamed = mapped != null && !mapped.equals(destination);
+        boolean sessionQueue = isUserDestinationSubscription(message);
+        if (!renamed && !sessionQueue) {
+            return message;
+        }
+
+        MessageHeaderAccessor accessor = MessageHeaderAccessor.getMutableAccessor(message);
+        SimpMessageHeaderAccessor simpAccessor = accessor instanceof SimpMessageHeaderAccessor
+                ? (SimpMessageHeaderAccessor) accessor
+                : SimpMessageHeaderAccessor.wrap(message);
+        if (renamed) {
+            simpAccessor.setDestination(mapped);
+        }
+        if (sessionQueue) {
+            simpAccessor.setNativeHeader("auto-delete", "true");
+            simpAccessor.setNativeHeader("durable", "false");
+        }
+        return MessageBuilder.createMessage(message.getPayload(), simpAccessor.getMessageHeaders());
+    }
+
+    /**
+     * SUBSCRIBE already resolved from "/user/..." to a per-session queue; the
+     * resolver keeps the client's destination in the original-destination native header.
+     */
+    private static boolean isUserDestinationSubscription(Message<?> message) {
+        return SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.SUBSCRIBE
+                && NativeMessageHeaderAccessor.getFirstNativeHeader(
+                        SimpMessageHeaderAccessor.ORIGINAL_DESTINATION, message.getHeaders()) != null;
+    }
+
+    /**
+     * @return destination with '/' after the broker prefix replaced by '.', or the
+     *         destination itself when it is not a broker destination
+     */
+    static String toRelayDestination(String destination) {
+        if (destination == null) {
+            return null;
+        }
+        for (String prefix : PREFIXES) {
+            if (destination.startsWith(prefix)) {
+                String name = destination.substring(prefix.length());
+                return name.indexOf('/') < 0 ? destination : prefix + name.replace('/', '.');
+            }
+        }
+        return destination;
+    }
+}
@@ -4,8 +4,13 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.messenger.security.JwtTokenProvider;
+import com.messenger.security.TokenDenylist;
+import com.messenger.service.ChatAuthorizationService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
@@ -21,15 +26,15 @@ import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 @Slf4j
 @Configuration
@@ -38,19 +43,84 @@ import java.util.List;
 @RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    /** Session attribute with the authenticated user's id (UUID) */
+    public static final String SESSION_USER_ID = "userId";
+    /** Session attribute with the token expiry, epoch millis (Long) */
+    public static final String SESSION_TOKEN_EXPIRES_AT = "tokenExpiresAt";
+    /** Session attribute with the token id (jti), checked against the denylist on every frame */
+    public static final String SESSION_TOKEN_ID = "tokenId";
+
     private final JwtTokenProvider jwtTokenProvider;
-    private final UserDetailsService userDetailsService;
+    private final TokenDenylist tokenDenylist;
+    private final ChatAuthorizationService chatAuthorizationService;
+    private final ChannelExecutorFactory channelExecutorFactory;
+
+    @Value("${websocket.broker.mode:SIMPLE}")
+    private BrokerMode brokerMode;
+
+    @Value("${websocket.broker.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${websocket.broker.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${websocket.broker.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${websocket.broker.relay.passcode:guest}")
+    private String relayPasscode;
+
+    @Value("${websocket.broker.relay.virtual-host:/}")
+    private String relayVirtualHost;
+
+    @Value("${websocket.broker.relay.heartbeat-ms:10000}")
+    private long relayHeartbeatMs;
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        // Enable simple broker for destinations prefixed with /topic and /queue
-        config.enableSimpleBroker("/topic", "/queue", "/user");
+        if (brokerMode == BrokerMode.RELAY) {
+            configureBrokerRelay(config);
+        } else {
+            // Enable simple broker for destinations prefixed with /topic and /queue
+            config.enableSimpleBroker("/topic", "/queue", "/user");
+        }
+        ChannelTaskExecutor brokerExecutor = channelExecutorFactory.broker();
+        if (brokerExecutor != null) {
+            config.configureBrokerChannel().taskExecutor(brokerExecutor);
+        }
         // Set prefix for messages bound for @MessageMapping methods
         config.setApplicationDestinationPrefixes("/app");
         // Set prefix for user-specific destinations
         config.setUserDestinationPrefix("/user");
     }
 
+    /**
+     * Relays /topic and /queue to an external STOMP broker (RabbitMQ stomp plugin),
+     * so subscriptions are shared by every application node.
+     *
+     * User destinations are resolved across nodes: each node broadcasts its local
+     * sessions to the registry topic, and messages for users connected elsewhere are
+     * rebroadcast on the unresolved-destination topic for the owning node to deliver.
+     */
+    private void configureBrokerRelay(MessageBrokerRegistry config) {
+        config.enableStompBrokerRelay("/topic", "/queue")
+                .setRelayHost(relayHost)
+                .setRelayPort(relayPort)
+                .setClientLogin(relayLogin)
+                .setClientPasscode(relayPasscode)
+                .setSystemLogin(relayLogin)
+                .setSystemPasscode(relayPasscode)
+                .setVirtualHost(relayVirtualHost)
+                .setSystemHeartbeatSendInterval(relayHeartbeatMs)
+                .setSystemHeartbeatReceiveInterval(relayHeartbeatMs)
+                .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                .setUserRegistryBroadcast("/topic/simp-user-registry");
+
+        config.configureBrokerChannel().interceptors(new RelayDestinationInterceptor());
+
+        log.info("WebSocket broker relay enabled: {}:{} (vhost {})", relayHost, relayPort, relayVirtualHost);
+    }
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws")
@@ -80,6 +150,7 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor(channelExecutorFactory.inbound());
         registration.interceptors(new ChannelInterceptor() {
             @Override
             public Message<?> preSend(Message<?> message, MessageChannel channel) {
@@ -87,33 +158,10 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 
                 if (accessor != null) {
                     if (StompCommand.CONNECT.equals(accessor.getCommand())) {
-                        String token = extractToken(accessor);
-                        
-                        if (token != null && jwtTokenProvider.validateToken(token)) {
-                            String username = jwtTokenProvider.getUsernameFromToken(token);
-                            String deviceId = jwtTokenProvider.extractDeviceId(token);
-                            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                            
-                            UsernamePasswordAuthenticationToken authentication =
-                                    new UsernamePasswordAuthenticationToken(
-                                            userDetails,
-                                            null,
-                                            userDetails.getAuthorities()
-                                    );
-                            
-                            SecurityContextHolder.getContext().setAuthentication(authentication);
-                            accessor.setUser(authentication);
-                            
-                            // Store device ID in session attributes
-                            if (deviceId != null) {
-                                accessor.getSessionAttributes().put("deviceId", deviceId);
-                            }
-                            
-                            log.info("WebSocket user connected: {} (device: {})", username, deviceId);
-                        } else {
-                            log.error("Invalid JWT token for WebSocket connection");
-                            throw new IllegalArgumentException("Invalid JWT token");
-                        }
+                        authenticate(accessor);
+                    } else if (StompCommand.SEND.equals(accessor.getCommand())
+                            || StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+                        checkSession(accessor);
                     } else if (StompCommand.DISCONNECT.equals(accessor.getCommand())) {
                         String username = accessor.getUser() != null ? accessor.getUser().getName() : "unknown";
                         String deviceId = accessor.getSessionAttributes() != null ? 
@@ -125,6 +173,92 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 return message;
             }
         });
+
+        if (brokerMode == BrokerMode.RELAY) {
+            // Runs after the authentication interceptor above
+            registration.interceptors(new RelayDestinationInterceptor());
+        }
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor(channelExecutorFactory.outbound());
+    }
+
+    /**
+     * Authenticates the STOMP session once, on CONNECT. The token is parsed a single
+     * time, the userId comes from the authorization cache, and the principal, userId
+     * and token expiry are kept with the session for all later frames.
+     */
+    private void authenticate(StompHeaderAccessor accessor) {
+        String token = extractToken(accessor);
+        Claims claims = null;
+        if (token != null) {
+            try {
+                claims = jwtTokenProvider.parseClaims(token);
+            } catch (JwtException | IllegalArgumentException e) {
+                log.debug("JWT rejected: {}", e.getMessage());
+            }
+        }
+        if (claims == null || claims.getSubject() == null) {
+            log.error("Invalid JWT token for WebSocket connection");
+            throw new IllegalArgumentException("Invalid JWT token");
+        }
+
+        if (tokenDenylist.isRevoked(claims.getId())) {
+            log.error("Revoked JWT token for WebSocket connection");
+            throw new IllegalArgumentException("Invalid JWT token");
+        }
+
+        String username = claims.getSubject();
+        // Tokens with identity claims carry the id, older ones fall back to the cache
+        String userIdClaim = claims.get(JwtTokenProvider.CLAIM_USER_ID, String.class);
+        UUID userId = userIdClaim != null
+                ? UUID.fromString(userIdClaim)
+                : chatAuthorizationService.findUserId(username)
+                        .orElseThrow(() -> new IllegalArgumentException("User not found"));
+        String deviceId = claims.get("deviceId", String.class);
+
+        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                username, null, List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        accessor.setUser(authentication);
+
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        if (attributes != null) {
+            attributes.put(SESSION_USER_ID, userId);
+            attributes.put(SESSION_TOKEN_EXPIRES_AT,
+                    claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE);
+            if (claims.getId() != null) {
+                attributes.put(SESSION_TOKEN_ID, claims.getId());
+            }
+            // Store device ID in session attributes
+            if (deviceId != null) {
+                attributes.put("deviceId", deviceId);
+            }
+        }
+
+        log.info("WebSocket user connected: {} (device: {})", username, deviceId);
+    }
+
+    /**
+     * Checks a SEND/SUBSCRIBE frame against the state cached on CONNECT, without
+     * touching the token or the database. The denylist lookup is local, so a token
+     * revoked after CONNECT stops the session at its next frame.
+     */
+    private void checkSession(StompHeaderAccessor accessor) {
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        Object expiresAt = attributes != null ? attributes.get(SESSION_TOKEN_EXPIRES_AT) : null;
+        if (accessor.getUser() == null || !(expiresAt instanceof Long)) {
+            throw new IllegalArgumentException("WebSocket session is not authenticated");
+        }
+        if ((Long) expiresAt <= System.currentTimeMillis()) {
+            log.info("JWT expired for WebSocket session of {}", accessor.getUser().getName());
+            throw new IllegalArgumentException("JWT token expired");
+        }
+        if (tokenDenylist.isRevoked((String) attributes.get(SESSION_TOKEN_ID))) {
+            log.info("JWT revoked for WebSocket session of {}", accessor.getUser().getName());
+            throw new IllegalArgumentException("JWT token revoked");
+        }
     }
 
     private String extractToken(StompHeaderAccessor accessor) {
@@ -141,4 +275,9 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         
         return null;
     }
+
+    public enum BrokerMode {
+        SIMPLE, // In-memory broker, single node only
+        RELAY   // External STOMP broker shared by all nodes
+    }
 }
@@ -51,8 +51,9 @@ public class AuthController {
     }
 
     @PostMapping("/logout")
-    public ResponseEntity<Void> logout(@RequestHeader("Authorization") String token) {
-        authService.logout(token.replace("Bearer ", ""));
+    public ResponseEntity<Void> logout(@RequestHeader("Authorization") String token,
+                                       @RequestBody(required = false) LogoutRequestDTO request) {
+        authService.logout(token.replace("Bearer ", ""), request != null ? request.getRefreshToken() : null);
         return ResponseEntity.ok().build();
     }
 
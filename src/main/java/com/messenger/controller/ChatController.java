@@ -2,8 +2,14 @@ package com.messenger.controller;
 
 import com.messenger.dto.ChatDTOs.*;
 import com.messenger.dto.MessageDTO;
+import com.messenger.dto.MessageSliceDTO;
+import com.messenger.dto.SyncDTOs.SyncRequest;
+import com.messenger.dto.SyncDTOs.SyncResponse;
+import com.messenger.service.ChatAuthorizationService;
 import com.messenger.service.ChatService;
 import com.messenger.service.MessageService;
+import com.messenger.service.PresenceService;
+import com.messenger.service.UserSearchService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -24,6 +30,9 @@ public class ChatController {
     private final ChatService chatService;
     private final MessageService messageService;
     private final com.messenger.service.QRCodeService qrCodeService;
+    private final ChatAuthorizationService chatAuthorizationService;
+    private final UserSearchService userSearchService;
+    private final PresenceService presenceService;
 
     @PostMapping
     public ResponseEntity<ChatDTO> createChat(
@@ -65,23 +74,37 @@ public class ChatController {
     public ResponseEntity<List<ChatDTO>> getMyChats(
             @AuthenticationPrincipal UserDetails userDetails) {
         List<ChatDTO> chats = chatService.getUserChats(userDetails.getUsername());
-        return ResponseEntity.ok(chats);
+        return ResponseEntity.ok(presenceService.withPresence(chats));
     }
 
     @GetMapping("/contacts")
     public ResponseEntity<List<ContactDTO>> getContacts(
+            @RequestParam(required = false) String q,
+            @RequestParam(defaultValue = "CO_MEMBERS") ChatService.ContactScope scope,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size,
             @AuthenticationPrincipal UserDetails userDetails) {
         log.info("Getting contacts for user {}", userDetails.getUsername());
-        List<ContactDTO> contacts = chatService.getContacts(userDetails.getUsername());
+        List<ContactDTO> contacts = chatService.getContacts(userDetails.getUsername(), q, scope, page, size);
         return ResponseEntity.ok(contacts);
     }
 
+    @GetMapping("/contacts/autocomplete")
+    public ResponseEntity<List<ContactDTO>> autocompleteUsers(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "10") int limit,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        UUID userId = chatAuthorizationService.resolveUserId(userDetails.getUsername());
+        List<ContactDTO> users = userSearchService.autocomplete(q, userId, limit);
+        return ResponseEntity.ok(users);
+    }
+
     @GetMapping("/{chatId}")
     public ResponseEntity<ChatDTO> getChatById(
             @PathVariable UUID chatId,
             @AuthenticationPrincipal UserDetails userDetails) {
         ChatDTO chat = chatService.getChatById(chatId, userDetails.getUsername());
-        return ResponseEntity.ok(chat);
+        return ResponseEntity.ok(presenceService.withPresence(chat));
     }
 
     @PostMapping("/{chatId}/participants")
@@ -121,6 +144,35 @@ public class ChatController {
         return ResponseEntity.ok(messages);
     }
 
+    @GetMapping("/{chatId}/messages/history")
+    public ResponseEntity<MessageSliceDTO> getChatHistory(
+            @PathVariable UUID chatId,
+            @RequestParam(required = false) Long beforeSeq,
+            @RequestParam(defaultValue = "50") int size,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        MessageSliceDTO history = messageService.getChatHistory(chatId, userDetails.getUsername(), beforeSeq, size);
+        return ResponseEntity.ok(history);
+    }
+
+    @GetMapping("/{chatId}/messages/since")
+    public ResponseEntity<List<MessageDTO>> getMessagesSince(
+            @PathVariable UUID chatId,
+            @RequestParam(defaultValue = "0") long afterSeq,
+            @RequestParam(defaultValue = "100") int limit,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        List<MessageDTO> messages = messageService.getMessagesAfter(chatId, userDetails.getUsername(), afterSeq, limit);
+        return ResponseEntity.ok(messages);
+    }
+
+    @PostMapping("/sync")
+    public ResponseEntity<SyncResponse> syncChats(
+            @Valid @RequestBody SyncRequest request,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        log.info("Delta sync of {} chats for user {}", request.getChats().size(), userDetails.getUsername());
+        SyncResponse response = messageService.syncChats(request, userDetails.getUsername());
+        return ResponseEntity.ok(response);
+    }
+
     @DeleteMapping("/{chatId}")
     public ResponseEntity<Void> deleteChat(
             @PathVariable UUID chatId,
@@ -0,0 +1,167 @@
+package com.messenger.controller;
+
+import com.messenger.dto.MediaFrame;
+import com.messenger.security.JwtHandshakeInterceptor;
+import com.messenger.security.TokenDenylist;
+import com.messenger.service.VideoStreamBuffer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Binary media channel for video frames, next to the STOMP endpoint.
+ *
+ * Frames use the compact {@link MediaFrame} header instead of Base64 JSON: the
+ * payload is buffered for recovery and forwarded to the target's media sessions
+ * without being decoded or re-encoded. Targets that are only connected over STOMP
+ * still receive the frame as a VideoFrameDTO on /user/queue/video.
+ *
+ * Sends go through {@link ConcurrentWebSocketSessionDecorator} with the DROP overflow
+ * strategy: a slow receiver loses frames instead of stalling the sender.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MediaWebSocketHandler extends BinaryWebSocketHandler {
+
+    private final VideoStreamBuffer videoStreamBuffer;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final TokenDenylist tokenDenylist;
+
+    @Value("${websocket.media.max-frame-bytes:1048576}")
+    private int maxFrameBytes;
+
+    @Value("${websocket.media.send-time-limit-ms:2000}")
+    private int sendTimeLimitMs;
+
+    @Value("${websocket.media.send-buffer-bytes:4194304}")
+    private int sendBufferBytes;
+
+    // username -> media sessions of the user (one per device/tab)
+    private final Map<String, Set<WebSocketSession>> sessionsByUser = new ConcurrentHashMap<>();
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        String username = username(session);
+        session.setBinaryMessageSizeLimit(maxFrameBytes);
+        WebSocketSession decorated = new ConcurrentWebSocketSessionDecorator(session, sendTimeLimitMs,
+                sendBufferBytes, ConcurrentWebSocketSessionDecorator.OverflowStrategy.DROP);
+        session.getAttributes().put("decorated", decorated);
+        sessionsByUser.computeIfAbsent(username, k -> ConcurrentHashMap.newKeySet()).add(decorated);
+        log.info("Media channel opened for {} ({})", username, session.getId());
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws IOException {
+        Object expiresAt = session.getAttributes().get(JwtHandshakeInterceptor.ATTR_TOKEN_EXPIRES_AT);
+        if (expiresAt instanceof Long && (Long) expiresAt <= System.currentTimeMillis()) {
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Token expired"));
+            return;
+        }
+        if (tokenDenylist.isRevoked((String) session.getAttributes().get(JwtHandshakeInterceptor.ATTR_TOKEN_ID))) {
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Token revoked"));
+            return;
+        }
+
+        MediaFrame frame;
+        try {
+            frame = MediaFrame.decode(message.getPayload());
+        } catch (IllegalArgumentException e) {
+            log.debug("Dropping malformed media frame from {}: {}", session.getId(), e.getMessage());
+            return;
+        }
+
+        String username = username(session);
+        videoStreamBuffer.addFrame(frame.getConferenceId(), username, frame.getPayload(), frame.getTimestamp(),
+                frame.getCodec(), frame.isKeyframe());
+
+        if (frame.getPeer() != null) {
+            deliver(frame.getPeer(), frame.withPeer(username));
+        }
+    }
+
+    /**
+     * Sends a frame to the user: binary to their media sessions if they have any,
+     * otherwise as JSON over STOMP. The frame's peer must be the sender.
+     */
+    public void deliver(String targetUser, MediaFrame frame) {
+        Set<WebSocketSession> sessions = sessionsByUser.get(targetUser);
+        if (sessions == null || sessions.isEmpty()) {
+            messagingTemplate.convertAndSendToUser(targetUser, "/queue/video", toDto(frame, targetUser));
+            return;
+        }
+
+        BinaryMessage message = new BinaryMessage(frame.encode());
+        for (WebSocketSession target : sessions) {
+            try {
+                // Each send gets its own view, the decorator may buffer the message
+                target.sendMessage(new BinaryMessage(message.getPayload().duplicate()));
+            } catch (SessionLimitExceededException e) {
+                // The receiver has not drained a send within the time limit: the decorator
+                // will not recover on its own, so close the session and stop buffering for it
+                log.info("Closing media channel of {} ({}): {}", targetUser, target.getId(), e.getMessage());
+                removeSession(targetUser, target);
+                closeQuietly(target, e.getStatus());
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Failed to deliver media frame to {} ({}): {}", targetUser, target.getId(), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        String username = username(session);
+        removeSession(username, session.getAttributes().get("decorated"));
+        log.info("Media channel closed for {} ({}): {}", username, session.getId(), status);
+    }
+
+    private void removeSession(String username, Object decorated) {
+        sessionsByUser.computeIfPresent(username, (k, sessions) -> {
+            sessions.remove(decorated);
+            return sessions.isEmpty() ? null : sessions;
+        });
+    }
+
+    private static void closeQuietly(WebSocketSession session, CloseStatus status) {
+        try {
+            session.close(status);
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Failed to close media channel {}: {}", session.getId(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        log.debug("Media channel transport error for {}: {}", session.getId(), exception.getMessage());
+    }
+
+    private WebSocketController.VideoFrameDTO toDto(MediaFrame frame, String targetUser) {
+        return WebSocketController.VideoFrameDTO.builder()
+                .conferenceId(frame.getConferenceId())
+                .targetUserId(targetUser)
+                .frameData(Base64.getEncoder().encodeToString(frame.getPayloadBytes()))
+                .timestamp(frame.getTimestamp())
+                .sequenceNumber(frame.getSequenceNumber())
+                .codec(frame.getCodec().name())
+                .keyframe(frame.isKeyframe())
+                .build();
+    }
+
+    private static String username(WebSocketSession session) {
+        return (String) session.getAttributes().get(JwtHandshakeInterceptor.ATTR_USERNAME);
+    }
+}
@@ -1,6 +1,8 @@
 package com.messenger.controller;
 
+import com.messenger.config.WebSocketConfig;
 import com.messenger.dto.*;
+import com.messenger.service.ChatAuthorizationService;
 import com.messenger.service.MessageService;
 import com.messenger.service.ReactionService;
 import com.messenger.service.VideoConferenceService;
@@ -16,6 +18,7 @@ import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 
+import java.nio.ByteBuffer;
 import java.security.Principal;
 import java.util.Base64;
 import java.util.Map;
@@ -32,18 +35,21 @@ public class WebSocketController {
     private final WebRtcConfigurationService webRtcConfigurationService;
     private final ReactionService reactionService;
     private final VideoStreamBuffer videoStreamBuffer;
+    private final MediaWebSocketHandler mediaWebSocketHandler;
     private final VideoReconnectService videoReconnectService;
+    private final ChatAuthorizationService chatAuthorizationService;
 
     /**
      * Handle text messages
      */
     @MessageMapping("/chat.send")
-    public void sendMessage(@Payload SendMessageRequest request, Principal principal) {
+    public void sendMessage(@Payload SendMessageRequest request, Principal principal,
+                            SimpMessageHeaderAccessor headerAccessor) {
         try {
             String username = principal.getName();
             log.info("Received message from {} to chat {}", username, request.getChatId());
 
-            MessageDTO message = messageService.sendMessage(request, username);
+            MessageDTO message = messageService.sendMessage(request, userId(headerAccessor, principal), username);
 
             // Send to all participants in the chat
             messagingTemplate.convertAndSend(
@@ -91,9 +97,11 @@ public class WebSocketController {
      * Handle read receipts
      */
     @MessageMapping("/chat.read")
-    public void markAsRead(@Payload ReadReceiptRequest request, Principal principal) {
+    public void markAsRead(@Payload ReadReceiptRequest request, Principal principal,
+                           SimpMessageHeaderAccessor headerAccessor) {
         messageService.markMessagesAsRead(
                 request.getChatId(),
+                userId(headerAccessor, principal),
                 principal.getName()
         );
 
@@ -306,6 +314,15 @@ public class WebSocketController {
         }
     }
     
+    /**
+     * Id of the session's user, resolved once on CONNECT (see WebSocketConfig#authenticate).
+     */
+    private UUID userId(SimpMessageHeaderAccessor headerAccessor, Principal principal) {
+        Map<String, Object> attributes = headerAccessor.getSessionAttributes();
+        Object userId = attributes != null ? attributes.get(WebSocketConfig.SESSION_USER_ID) : null;
+        return userId instanceof UUID id ? id : chatAuthorizationService.resolveUserId(principal.getName());
+    }
+
     private void handleAutomaticVideoRecovery(String conferenceId, Principal principal) {
         // Automatically request video recovery for reconnected session
         byte[][] frames = videoStreamBuffer.getLastFrames(conferenceId, principal.getName(), 30);
@@ -421,21 +438,29 @@ public class WebSocketController {
             // Decode base64 frame data
             byte[] frameData = Base64.getDecoder().decode(frame.getFrameData());
             
-            // Add to buffer
+            // Add to buffer (keyframes are detected from the codec headers; under memory
+            // pressure the buffer keeps keyframes only, or nothing)
             videoStreamBuffer.addFrame(
                     frame.getConferenceId(),
                     principal.getName(),
                     frameData,
-                    frame.getTimestamp()
+                    frame.getTimestamp(),
+                    MediaFrame.Codec.fromName(frame.getCodec()),
+                    frame.isKeyframe()
             );
             
-            // Forward to target participant if specified
+            // Forward to target participant if specified: raw bytes over the media channel,
+            // or Base64 JSON on /user/queue/video if the target has no media session
             if (frame.getTargetUserId() != null) {
-                messagingTemplate.convertAndSendToUser(
-                        frame.getTargetUserId(),
-                        "/queue/video",
-                        frame
-                );
+                mediaWebSocketHandler.deliver(frame.getTargetUserId(), new MediaFrame(
+                        frame.isKeyframe() ? MediaFrame.FLAG_KEYFRAME : 0,
+                        MediaFrame.Codec.fromName(frame.getCodec()),
+                        frame.getTimestamp(),
+                        frame.getSequenceNumber(),
+                        frame.getConferenceId(),
+                        principal.getName(),
+                        ByteBuffer.wrap(frameData)
+                ));
             }
             
         } catch (Exception e) {
@@ -443,6 +468,14 @@ public class WebSocketController {
         }
     }
 
+    /**
+     * Active speaker hint: the speaker's recovery buffer is evicted last under memory pressure
+     */
+    @MessageMapping("/conference.active-speaker")
+    public void updateActiveSpeaker(@Payload ActiveSpeakerRequest request, Principal principal) {
+        videoStreamBuffer.markActiveSpeaker(request.getConferenceId(), principal.getName(), request.isSpeaking());
+    }
+
     /**
      * Request video stream recovery after connection interruption
      */
@@ -557,6 +590,18 @@ public class WebSocketController {
         private long timestamp;
         private long sequenceNumber;
         private String codec;
+        private boolean keyframe;
+    }
+
+    /**
+     * DTO for active speaker updates (sent by the client while its audio level is above threshold)
+     */
+    @lombok.Data
+    @lombok.NoArgsConstructor
+    @lombok.AllArgsConstructor
+    public static class ActiveSpeakerRequest {
+        private String conferenceId;
+        private boolean speaking;
     }
 
     /**
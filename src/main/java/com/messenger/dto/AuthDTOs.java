@@ -61,6 +61,14 @@ public class AuthDTOs {
         private String refreshToken;
     }
 
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class LogoutRequestDTO {
+        private String refreshToken;  // Revoked along with the access token if sent
+    }
+
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
@@ -49,6 +49,7 @@ public class ChatDTOs {
         private String createdBy;
         private LocalDateTime createdAt;
         private List<ChatParticipantDTO> participants;
+        private Integer memberCount;
         private MessageDTO lastMessage;
         private Long unreadCount;
         private Boolean isEncrypted;
@@ -0,0 +1,200 @@
+package com.messenger.dto;
+
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Video frame of the binary media channel (/ws-media).
+ *
+ * Wire format, big-endian:
+ * <pre>
+ *  0  u8   version (1)
+ *  1  u8   flags (bit 0 - keyframe)
+ *  2  u8   codec id, see {@link Codec}
+ *  3  u8   reserved
+ *  4  i64  timestamp, ms
+ * 12  i64  sequence number
+ * 20  u8   conference id length, then UTF-8 bytes
+ *     u8   peer length, then UTF-8 bytes (0 - none)
+ *     ...  payload (encoded frame, passed through untouched)
+ * </pre>
+ * "peer" is the target user in client-to-server frames and the sender in frames
+ * forwarded to clients.
+ */
+@Getter
+public class MediaFrame {
+
+    public static final int VERSION = 1;
+    public static final int FLAG_KEYFRAME = 0x01;
+
+    private static final int FIXED_HEADER_SIZE = 20;
+    private static final int MAX_STRING_BYTES = 255;
+
+    private final int flags;
+    private final Codec codec;
+    private final long timestamp;
+    private final long sequenceNumber;
+    private final String conferenceId;
+    private final String peer;
+    private final ByteBuffer payload;
+
+    public MediaFrame(int flags, Codec codec, long timestamp, long sequenceNumber,
+                      String conferenceId, String peer, ByteBuffer payload) {
+        this.flags = flags;
+        this.codec = codec != null ? codec : Codec.UNKNOWN;
+        this.timestamp = timestamp;
+        this.sequenceNumber = sequenceNumber;
+        this.conferenceId = conferenceId;
+        this.peer = peer;
+        this.payload = payload.asReadOnlyBuffer();
+    }
+
+    /**
+     * Parses a frame. The payload is a view of the given buffer, not a copy.
+     *
+     * @throws IllegalArgumentException if the frame is malformed
+     */
+    public static MediaFrame decode(ByteBuffer buffer) {
+        ByteBuffer in = buffer.duplicate();
+        if (in.remaining() < FIXED_HEADER_SIZE + 2) {
+            throw new IllegalArgumentException("Media frame too short: " + in.remaining() + " bytes");
+        }
+        int version = in.get() & 0xFF;
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported media frame version: " + version);
+        }
+        int flags = in.get() & 0xFF;
+        Codec codec = Codec.fromId(in.get() & 0xFF);
+        in.get(); // reserved
+        long timestamp = in.getLong();
+        long sequenceNumber = in.getLong();
+        String conferenceId = readString(in);
+        if (conferenceId == null) {
+            throw new IllegalArgumentException("Media frame without conference id");
+        }
+        String peer = readString(in);
+        return new MediaFrame(flags, codec, timestamp, sequenceNumber, conferenceId, peer, in.slice());
+    }
+
+    /**
+     * Serializes the header and appends the payload bytes as they are.
+     */
+    public ByteBuffer encode() {
+        byte[] conference = conferenceId.getBytes(StandardCharsets.UTF_8);
+        byte[] peerBytes = peer != null ? peer.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        checkLength(conference);
+        checkLength(peerBytes);
+
+        ByteBuffer payloadView = payload.duplicate();
+        ByteBuffer out = ByteBuffer.allocate(FIXED_HEADER_SIZE + 2 + conference.length + peerBytes.length
+                + payloadView.remaining());
+        out.put((byte) VERSION)
+                .put((byte) flags)
+                .put((byte) codec.getId())
+                .put((byte) 0)
+                .putLong(timestamp)
+                .putLong(sequenceNumber)
+                .put((byte) conference.length)
+                .put(conference)
+                .put((byte) peerBytes.length)
+                .put(peerBytes)
+                .put(payloadView);
+        return out.flip();
+    }
+
+    /**
+     * Same frame with another peer, sharing the payload.
+     */
+    public MediaFrame withPeer(String newPeer) {
+        return new MediaFrame(flags, codec, timestamp, sequenceNumber, conferenceId, newPeer, payload);
+    }
+
+    public boolean isKeyframe() {
+        return (flags & FLAG_KEYFRAME) != 0;
+    }
+
+    public int getPayloadSize() {
+        return payload.remaining();
+    }
+
+    public byte[] getPayloadBytes() {
+        byte[] bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static String readString(ByteBuffer in) {
+        if (!in.hasRemaining()) {
+            throw new IllegalArgumentException("Media frame header truncated");
+        }
+        int length = in.get() & 0xFF;
+        if (length == 0) {
+            return null;
+        }
+        if (in.remaining() < length) {
+            throw new IllegalArgumentException("Media frame header truncated");
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void checkLength(byte[] bytes) {
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("Media frame header field longer than " + MAX_STRING_BYTES + " bytes");
+        }
+    }
+
+    public enum Codec {
+        UNKNOWN(0), VP8(1), VP9(2), H264(3), AV1(4);
+
+        private final int id;
+
+        Codec(int id) {
+            this.id = id;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public static Codec fromId(int id) {
+            for (Codec codec : values()) {
+                if (codec.id == id) {
+                    return codec;
+                }
+            }
+            return UNKNOWN;
+        }
+
+        /**
+         * Maps codec names as sent by browsers ("VP8", "video/H264", "avc1.42e01f") to a codec.
+         */
+        public static Codec fromName(String name) {
+            if (name == null) {
+                return UNKNOWN;
+            }
+            String normalized = name.toUpperCase(Locale.ROOT);
+            int slash = normalized.indexOf('/');
+            if (slash >= 0) {
+                normalized = normalized.substring(slash + 1);
+            }
+            if (normalized.startsWith("VP8")) {
+                return VP8;
+            }
+            if (normalized.startsWith("VP9") || normalized.startsWith("VP09")) {
+                return VP9;
+            }
+            if (normalized.startsWith("H264") || normalized.startsWith("AVC")) {
+                return H264;
+            }
+            if (normalized.startsWith("AV1") || normalized.startsWith("AV01")) {
+                return AV1;
+            }
+            return UNKNOWN;
+        }
+    }
+}
@@ -15,6 +15,7 @@ import java.util.UUID;
 public class MessageDTO {
     private UUID id;
     private UUID chatId;
+    private Long seq;
     private String senderId;
     private String senderUsername;
     private String senderAvatarUrl;
@@ -0,0 +1,34 @@
+package com.messenger.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for one page of chat history fetched by cursor.
+ * Messages are ordered newest first.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageSliceDTO {
+
+    /**
+     * Messages in this page, newest first.
+     */
+    private List<MessageDTO> messages;
+
+    /**
+     * Cursor for the next (older) page: pass it back as beforeSeq. Null when there is nothing older.
+     */
+    private Long nextCursor;
+
+    /**
+     * Whether older messages exist.
+     */
+    private boolean hasMore;
+}
@@ -0,0 +1,75 @@
+package com.messenger.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * DTOs for multi-chat delta sync after a reconnect.
+ *
+ * The client sends one cursor per chat and receives only what changed since it:
+ * new messages (by sequence number) and edited, deleted or re-reacted messages
+ * (by update time). Responses are bounded; the client repeats the request with
+ * the returned cursors while {@code hasMore} is set.
+ */
+public class SyncDTOs {
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class SyncRequest {
+        @NotEmpty(message = "At least one chat cursor is required")
+        @Valid
+        private List<ChatCursor> chats;
+
+        private Integer limit;       // Max messages per chat and list, capped by the server
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class ChatCursor {
+        @NotNull(message = "Chat id is required")
+        private UUID chatId;
+
+        private Long afterSeq;               // Highest sequence number the client has
+        private LocalDateTime changedSince;  // nextChangedSince of the previous sync, null to skip changes
+        private UUID changedAfterId;         // nextChangedAfterId of the previous sync
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class ChatDelta {
+        private UUID chatId;
+        private List<MessageDTO> messages;   // New messages, oldest first
+        private List<MessageDTO> changed;    // Already known messages that were edited, deleted or reacted to
+        private Long nextAfterSeq;
+        private LocalDateTime nextChangedSince;
+        private UUID nextChangedAfterId;     // Set when the changed list was cut inside one timestamp
+        private boolean hasMore;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class SyncResponse {
+        private List<ChatDelta> chats;
+        private Map<UUID, Map<String, Long>> reactions;  // messageId -> emoji -> count, for returned messages
+        private LocalDateTime serverTime;
+        private boolean hasMore;
+    }
+}
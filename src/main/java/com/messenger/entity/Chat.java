@@ -59,6 +59,10 @@ public class Chat {
     @Column(name = "is_encrypted")
     private Boolean isEncrypted = true;
 
+    // Maintained only by ChatRepository.allocateMessageSeq, never written through the entity
+    @Column(name = "last_message_seq", insertable = false, updatable = false)
+    private Long lastMessageSeq;
+
     @Version
     private Long version;
 
@@ -0,0 +1,58 @@
+package com.messenger.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Denormalized per-chat data needed to render the chat list: the last message
+ * preview and the member count. Maintained on write by ChatSummaryRepository so
+ * the chat list is read without touching messages or counting members.
+ */
+@Entity
+@Table(name = "chat_summaries")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChatSummary {
+
+    @Id
+    @Column(name = "chat_id")
+    private UUID chatId;
+
+    @Column(name = "last_message_id")
+    private UUID lastMessageId;
+
+    @Column(name = "last_message_seq")
+    private Long lastMessageSeq;
+
+    @Column(name = "last_sender_id")
+    private UUID lastSenderId;
+
+    @Column(name = "last_sender_username")
+    private String lastSenderUsername;
+
+    @Column(name = "last_message_type")
+    @Enumerated(EnumType.STRING)
+    private Message.MessageType lastMessageType;
+
+    @Column(name = "last_encrypted_content", columnDefinition = "TEXT")
+    private String lastEncryptedContent;
+
+    @Column(name = "last_encryption_iv")
+    private String lastEncryptionIv;
+
+    @Column(name = "last_message_at")
+    private LocalDateTime lastMessageAt;
+
+    @Column(name = "member_count", nullable = false)
+    private Integer memberCount;
+}
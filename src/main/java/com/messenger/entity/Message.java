@@ -17,6 +17,8 @@ import java.util.UUID;
 @Entity
 @Table(name = "messages", indexes = {
         @Index(name = "idx_chat_created", columnList = "chat_id, created_at"),
+        @Index(name = "uk_messages_chat_seq", columnList = "chat_id, seq", unique = true),
+        @Index(name = "idx_messages_chat_updated", columnList = "chat_id, updated_at"),
         @Index(name = "idx_sender", columnList = "sender_id"),
         @Index(name = "idx_client_msg_id", columnList = "client_message_id")
 })
@@ -36,6 +38,10 @@ public class Message {
     @Column(name = "client_message_id")
     private String clientMessageId;
 
+    // Inserted as a placeholder, written by MessageRepository.assignSeq, never by entity updates
+    @Column(name = "seq", nullable = false, updatable = false)
+    private Long seq; // Per-chat sequence number, allocated from Chat.lastMessageSeq; ordering key
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "chat_id", nullable = false)
     private Chat chat;
@@ -43,6 +43,10 @@ public class UserChat {
     @Column(name = "last_read_message_id")
     private UUID lastReadMessageId;
 
+    // Read watermark: every message with seq <= lastReadSeq is read. Updated by bulk queries only
+    @Column(name = "last_read_seq", insertable = false, updatable = false)
+    private Long lastReadSeq;
+
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
@@ -0,0 +1,43 @@
+package com.messenger.event;
+
+import lombok.Value;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Application events about chat changes. Published inside the service
+ * transaction and handled after commit.
+ */
+public class ChatEvents {
+
+    /**
+     * A message was added to the chat.
+     */
+    @Value
+    public static class MessageSent {
+        UUID chatId;
+        UUID messageId;
+        String senderUsername;
+    }
+
+    /**
+     * A member marked the chat as read.
+     */
+    @Value
+    public static class ChatRead {
+        UUID chatId;
+        String username;
+    }
+
+    /**
+     * Chat was created or deleted, or members were added or removed.
+     * Users who are no longer members are listed explicitly because they
+     * cannot be looked up from the chat after commit.
+     */
+    @Value
+    public static class MembershipChanged {
+        UUID chatId;
+        Collection<String> formerMembers;
+    }
+}
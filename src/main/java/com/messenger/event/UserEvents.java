@@ -0,0 +1,20 @@
+package com.messenger.event;
+
+import lombok.Value;
+
+import java.util.UUID;
+
+/**
+ * Application events about user accounts.
+ */
+public class UserEvents {
+
+    /**
+     * A new user account was created.
+     */
+    @Value
+    public static class Registered {
+        UUID userId;
+        String username;
+    }
+}
@@ -24,4 +24,15 @@ public interface ChatRepository extends JpaRepository<Chat, UUID> {
     @Query("SELECT c FROM Chat c JOIN c.userChats uc WHERE uc.user.id = :userId AND c.chatType = :chatType")
     List<Chat> findByUserIdAndChatType(@Param("userId") UUID userId, 
                                         @Param("chatType") Chat.ChatType chatType);
+
+    /**
+     * Atomically allocates the next per-chat message sequence number.
+     * The chat row stays locked until the calling transaction commits, so
+     * sequence numbers become visible in the order they were allocated.
+     * Senders to the same chat queue on that lock: call it as late in the
+     * transaction as possible.
+     */
+    @Query(value = "UPDATE chats SET last_message_seq = last_message_seq + 1 WHERE id = :chatId " +
+           "RETURNING last_message_seq", nativeQuery = true)
+    long allocateMessageSeq(@Param("chatId") UUID chatId);
 }
@@ -0,0 +1,87 @@
+package com.messenger.repository;
+
+import com.messenger.entity.Chat;
+import com.messenger.entity.ChatSummary;
+import com.messenger.entity.Message;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ChatSummaryRepository extends JpaRepository<ChatSummary, UUID> {
+
+    /**
+     * Loads everything needed to render a user's chat list in one query:
+     * chat data, the last message preview, member count and unread count
+     * (distance between the chat head and the user's read watermark).
+     */
+    @Query("SELECT c.id AS chatId, c.chatType AS chatType, c.chatName AS chatName, c.chatAvatar AS chatAvatar, " +
+           "cb.username AS createdBy, c.createdAt AS createdAt, c.isEncrypted AS isEncrypted, " +
+           "s.lastMessageId AS lastMessageId, s.lastMessageSeq AS lastMessageSeq, " +
+           "s.lastSenderId AS lastSenderId, s.lastSenderUsername AS lastSenderUsername, " +
+           "s.lastMessageType AS lastMessageType, s.lastEncryptedContent AS lastEncryptedContent, " +
+           "s.lastEncryptionIv AS lastEncryptionIv, s.lastMessageAt AS lastMessageAt, " +
+           "s.memberCount AS memberCount, c.lastMessageSeq - uc.lastReadSeq AS unreadCount " +
+           "FROM UserChat uc JOIN uc.chat c LEFT JOIN c.createdBy cb " +
+           "LEFT JOIN ChatSummary s ON s.chatId = c.id " +
+           "WHERE uc.user.id = :userId " +
+           "ORDER BY COALESCE(s.lastMessageAt, c.createdAt) DESC")
+    List<ChatListItem> findChatListByUserId(@Param("userId") UUID userId);
+
+    /**
+     * Recounts members, creating the summary row if the chat has none yet.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO chat_summaries (chat_id, member_count) " +
+           "SELECT :chatId, COUNT(*) FROM user_chats WHERE chat_id = :chatId " +
+           "ON CONFLICT (chat_id) DO UPDATE SET member_count = EXCLUDED.member_count", nativeQuery = true)
+    int refreshMemberCount(@Param("chatId") UUID chatId);
+
+    /**
+     * Replaces the last message preview. Older sequence numbers never overwrite newer ones.
+     */
+    @Modifying
+    @Query("UPDATE ChatSummary s SET s.lastMessageId = :messageId, s.lastMessageSeq = :seq, " +
+           "s.lastSenderId = :senderId, s.lastSenderUsername = :senderUsername, " +
+           "s.lastMessageType = :messageType, s.lastEncryptedContent = :encryptedContent, " +
+           "s.lastEncryptionIv = :encryptionIv, s.lastMessageAt = :createdAt " +
+           "WHERE s.chatId = :chatId AND (s.lastMessageSeq IS NULL OR s.lastMessageSeq < :seq)")
+    int updateLastMessage(@Param("chatId") UUID chatId,
+                          @Param("messageId") UUID messageId,
+                          @Param("seq") Long seq,
+                          @Param("senderId") UUID senderId,
+                          @Param("senderUsername") String senderUsername,
+                          @Param("messageType") Message.MessageType messageType,
+                          @Param("encryptedContent") String encryptedContent,
+                          @Param("encryptionIv") String encryptionIv,
+                          @Param("createdAt") LocalDateTime createdAt);
+
+    /**
+     * Row of the chat list projection.
+     */
+    interface ChatListItem {
+        UUID getChatId();
+        Chat.ChatType getChatType();
+        String getChatName();
+        String getChatAvatar();
+        String getCreatedBy();
+        LocalDateTime getCreatedAt();
+        Boolean getIsEncrypted();
+        UUID getLastMessageId();
+        Long getLastMessageSeq();
+        UUID getLastSenderId();
+        String getLastSenderUsername();
+        Message.MessageType getLastMessageType();
+        String getLastEncryptedContent();
+        String getLastEncryptionIv();
+        LocalDateTime getLastMessageAt();
+        Integer getMemberCount();
+        Long getUnreadCount();
+    }
+}
@@ -8,6 +8,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -136,8 +137,9 @@ public interface MessageReactionRepository extends JpaRepository<MessageReaction
      * @param messageId the message identifier
      * @param userId    the user identifier
      * @param emojiCode the emoji code
+     * @return number of deleted records
      */
-    void deleteByMessageIdAndUserIdAndEmojiCode(String messageId, String userId, String emojiCode);
+    long deleteByMessageIdAndUserIdAndEmojiCode(String messageId, String userId, String emojiCode);
 
     /**
      * Deletes reactions older than the specified timestamp.
@@ -168,6 +170,16 @@ public interface MessageReactionRepository extends JpaRepository<MessageReaction
     @Query("SELECT mr.emojiCode, COUNT(mr) FROM MessageReaction mr WHERE mr.messageId = :messageId GROUP BY mr.emojiCode")
     List<Object[]> countByMessageIdGroupedByEmoji(@Param("messageId") String messageId);
 
+    /**
+     * Gets reaction counts grouped by message and emoji for several messages at once.
+     *
+     * @param messageIds the message identifiers
+     * @return list of object arrays with [messageId, emojiCode, count]
+     */
+    @Query("SELECT mr.messageId, mr.emojiCode, COUNT(mr) FROM MessageReaction mr " +
+           "WHERE mr.messageId IN :messageIds GROUP BY mr.messageId, mr.emojiCode")
+    List<Object[]> countByMessageIdInGroupedByEmoji(@Param("messageIds") Collection<String> messageIds);
+
     /**
      * Checks if a user has reacted to a specific message.
      *
@@ -3,12 +3,15 @@ package com.messenger.repository;
 import com.messenger.entity.Message;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -22,7 +25,65 @@ public interface MessageRepository extends JpaRepository<Message, UUID> {
 
     Page<Message> findByChatIdAndIsDeletedFalse(UUID chatId, Pageable pageable);
 
-    List<Message> findByChatIdAndIsDeletedFalseOrderByCreatedAtDesc(UUID chatId);
+    /**
+     * Newest visible message of each chat, one row per chat with at least one message.
+     * The LATERAL subquery walks uk_messages_chat_seq backwards and stops at the first row.
+     */
+    @Query(value = "SELECT c.id AS \"chatId\", lm.id AS \"id\", lm.seq AS \"seq\", " +
+            "lm.sender_id AS \"senderId\", u.username AS \"senderUsername\", " +
+            "lm.message_type AS \"messageType\", lm.encrypted_content AS \"encryptedContent\", " +
+            "lm.encryption_iv AS \"encryptionIv\", lm.created_at AS \"createdAt\" " +
+            "FROM chats c " +
+            "CROSS JOIN LATERAL (SELECT m.id, m.seq, m.sender_id, m.message_type, m.encrypted_content, " +
+            "m.encryption_iv, m.created_at FROM messages m " +
+            "WHERE m.chat_id = c.id AND m.is_deleted = false ORDER BY m.seq DESC LIMIT 1) lm " +
+            "JOIN users u ON u.id = lm.sender_id " +
+            "WHERE c.id IN (:chatIds)", nativeQuery = true)
+    List<LastMessagePreview> findLastMessagePreviews(@Param("chatIds") Collection<UUID> chatIds);
+
+    // Keyset page walking (chat_id, seq) backwards; Slice return type means no count query
+    Slice<Message> findByChatIdAndIsDeletedFalseAndSeqLessThan(UUID chatId, Long seq, Pageable pageable);
+
+    // Range scan on (chat_id, seq); List return type means no count query
+    List<Message> findByChatIdAndSeqGreaterThanOrderBySeqAsc(UUID chatId, Long seq, Pageable pageable);
+
+    /**
+     * Messages up to seq modified after the (updatedAt, id) cursor, in cursor order; new
+     * messages never have updatedAt set. Pass the greatest UUID as afterId to skip every
+     * row stamped exactly at {@code since}.
+     */
+    @Query("SELECT m FROM Message m WHERE m.chat.id = :chatId AND m.seq <= :seq " +
+            "AND (m.updatedAt > :since OR (m.updatedAt = :since AND m.id > :afterId)) " +
+            "ORDER BY m.updatedAt ASC, m.id ASC")
+    List<Message> findChangedSince(@Param("chatId") UUID chatId,
+            @Param("seq") long seq,
+            @Param("since") LocalDateTime since,
+            @Param("afterId") UUID afterId,
+            Pageable pageable);
+
+    /**
+     * Bumps updatedAt without touching the entity version so delta sync picks up
+     * changes stored outside the message row (reactions). Stamped with database
+     * time, the same clock delta sync reads its watermark from.
+     */
+    @Modifying
+    @Query("UPDATE Message m SET m.updatedAt = LOCAL DATETIME WHERE m.id = :messageId")
+    int touch(@Param("messageId") UUID messageId);
+
+    /**
+     * Unique negative seq a message is inserted with (the column is NOT NULL) until
+     * {@link #assignSeq} replaces it before commit; never visible to other transactions.
+     */
+    @Query(value = "SELECT -nextval('message_seq_placeholder')", nativeQuery = true)
+    long reserveSeqPlaceholder();
+
+    // seq is not updatable through the entity, so setting it in memory does not bump the version
+    @Modifying
+    @Query(value = "UPDATE messages SET seq = :seq WHERE id = :messageId", nativeQuery = true)
+    int assignSeq(@Param("messageId") UUID messageId, @Param("seq") long seq);
+
+    @Query(value = "SELECT LOCALTIMESTAMP", nativeQuery = true)
+    java.sql.Timestamp currentDatabaseTime();
 
     @Query("SELECT m FROM Message m WHERE m.chat.id = :chatId AND m.createdAt > :since ORDER BY m.createdAt ASC")
     List<Message> findByChatIdAndCreatedAtAfter(@Param("chatId") UUID chatId,
@@ -36,4 +97,19 @@ public interface MessageRepository extends JpaRepository<Message, UUID> {
     List<Message> findBySenderIdAndCreatedAtBetween(@Param("userId") UUID userId,
             @Param("start") LocalDateTime start,
             @Param("end") LocalDateTime end);
+
+    /**
+     * Read-only chat preview row, not a managed entity.
+     */
+    interface LastMessagePreview {
+        UUID getChatId();
+        UUID getId();
+        Long getSeq();
+        UUID getSenderId();
+        String getSenderUsername();
+        String getMessageType();
+        String getEncryptedContent();
+        String getEncryptionIv();
+        LocalDateTime getCreatedAt();
+    }
 }
@@ -2,10 +2,12 @@ package com.messenger.repository;
 
 import com.messenger.entity.MessageStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -28,4 +30,27 @@ public interface MessageStatusRepository extends JpaRepository<MessageStatus, UU
 
     @Query("SELECT COUNT(ms) FROM MessageStatus ms WHERE ms.user.id = :userId AND ms.message.chat.id = :chatId AND ms.status != 'READ'")
     long countUnreadByUserIdAndChatId(@Param("userId") UUID userId, @Param("chatId") UUID chatId);
+
+    @Modifying
+    @Query("UPDATE MessageStatus ms SET ms.status = :status, ms.updatedAt = :updatedAt " +
+           "WHERE ms.user.id = :userId AND ms.status != :status " +
+           "AND ms.message.id IN (SELECT m.id FROM Message m WHERE m.chat.id = :chatId)")
+    int updateStatusByUserIdAndChatId(@Param("userId") UUID userId,
+                                      @Param("chatId") UUID chatId,
+                                      @Param("status") MessageStatus.MessageDeliveryStatus status,
+                                      @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * Fans out delivery statuses for a new message to every member of its chat
+     * with a single INSERT ... SELECT, so a send costs one round trip regardless
+     * of the group size. The sender's own row is created as READ.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO message_status (id, message_id, user_id, status, created_at) " +
+            "SELECT gen_random_uuid(), :messageId, uc.user_id, " +
+            "CASE WHEN uc.user_id = :senderId THEN 'READ' ELSE 'SENT' END, CURRENT_TIMESTAMP " +
+            "FROM user_chats uc WHERE uc.chat_id = :chatId", nativeQuery = true)
+    int insertForChatMembers(@Param("messageId") UUID messageId,
+                             @Param("chatId") UUID chatId,
+                             @Param("senderId") UUID senderId);
 }
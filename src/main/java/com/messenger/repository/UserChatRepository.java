@@ -2,10 +2,15 @@ package com.messenger.repository;
 
 import com.messenger.entity.UserChat;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Repository
@@ -15,9 +20,44 @@ public interface UserChatRepository extends JpaRepository<UserChat, UUID> {
 
     List<UserChat> findByChatId(UUID chatId);
 
+    @Query("SELECT uc FROM UserChat uc JOIN FETCH uc.user WHERE uc.chat.id IN :chatIds")
+    List<UserChat> findWithUserByChatIdIn(@Param("chatIds") Collection<UUID> chatIds);
+
+    @Query("SELECT uc.chat.id FROM UserChat uc WHERE uc.user.id = :userId AND uc.chat.id IN :chatIds")
+    Set<UUID> findChatIdsByUserIdAndChatIdIn(@Param("userId") UUID userId,
+                                             @Param("chatIds") Collection<UUID> chatIds);
+
+    @Query("SELECT uc.user.id FROM UserChat uc WHERE uc.chat.id = :chatId")
+    List<UUID> findUserIdsByChatId(@Param("chatId") UUID chatId);
+
+    @Query("SELECT uc.user.username FROM UserChat uc WHERE uc.chat.id = :chatId")
+    List<String> findUsernamesByChatId(@Param("chatId") UUID chatId);
+
     Optional<UserChat> findByUserIdAndChatId(UUID userId, UUID chatId);
 
     boolean existsByUserIdAndChatId(UUID userId, UUID chatId);
 
     long countByChatId(UUID chatId);
+
+    /**
+     * Moves the member's read watermark forward to the given sequence number.
+     */
+    @Modifying
+    @Query("UPDATE UserChat uc SET uc.lastReadSeq = :seq " +
+           "WHERE uc.user.id = :userId AND uc.chat.id = :chatId AND uc.lastReadSeq < :seq")
+    int advanceReadSeq(@Param("userId") UUID userId, @Param("chatId") UUID chatId, @Param("seq") long seq);
+
+    /**
+     * Marks everything in the chat as read by moving the watermark to the chat head.
+     */
+    @Modifying
+    @Query(value = "UPDATE user_chats uc SET last_read_seq = c.last_message_seq, " +
+           "last_read_message_id = (SELECT m.id FROM messages m WHERE m.chat_id = c.id AND m.seq = c.last_message_seq) " +
+           "FROM chats c WHERE c.id = uc.chat_id AND uc.user_id = :userId AND uc.chat_id = :chatId " +
+           "AND uc.last_read_seq < c.last_message_seq", nativeQuery = true)
+    int markChatRead(@Param("userId") UUID userId, @Param("chatId") UUID chatId);
+
+    @Query("SELECT uc.chat.lastMessageSeq - uc.lastReadSeq FROM UserChat uc " +
+           "WHERE uc.user.id = :userId AND uc.chat.id = :chatId")
+    Optional<Long> countUnreadByWatermark(@Param("userId") UUID userId, @Param("chatId") UUID chatId);
 }
@@ -1,6 +1,8 @@
 package com.messenger.repository;
 
 import com.messenger.entity.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -15,6 +17,9 @@ public interface UserRepository extends JpaRepository<User, UUID> {
 
     Optional<User> findByUsername(String username);
 
+    @Query("SELECT u.id FROM User u WHERE u.username = :username")
+    Optional<UUID> findIdByUsername(@Param("username") String username);
+
     Optional<User> findByEmail(String email);
 
     boolean existsByUsername(String username);
@@ -25,4 +30,63 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     List<User> searchUsers(@Param("query") String query);
 
     List<User> findByIsOnlineTrue();
+
+    /**
+     * Users sharing at least one chat with the given user, filtered by a
+     * lowercase LIKE pattern on the username.
+     */
+    @Query("SELECT DISTINCT u.id AS userId, u.username AS username, u.avatarUrl AS avatarUrl, " +
+           "u.isOnline AS isOnline, u.statusMessage AS statusMessage " +
+           "FROM UserChat me JOIN UserChat other ON other.chat.id = me.chat.id JOIN other.user u " +
+           "WHERE me.user.id = :userId AND u.id <> :userId AND LOWER(u.username) LIKE :pattern ESCAPE '\\' " +
+           "ORDER BY u.username")
+    Slice<ContactView> findCoMembers(@Param("userId") UUID userId,
+                                     @Param("pattern") String pattern,
+                                     Pageable pageable);
+
+    /**
+     * Directory search by username prefix. The pattern must be anchored at the start
+     * so the lower(username) text_pattern_ops index can be used.
+     */
+    @Query("SELECT u.id AS userId, u.username AS username, u.avatarUrl AS avatarUrl, " +
+           "u.isOnline AS isOnline, u.statusMessage AS statusMessage " +
+           "FROM User u WHERE LOWER(u.username) LIKE :pattern ESCAPE '\\' AND u.id <> :userId " +
+           "ORDER BY LOWER(u.username)")
+    Slice<ContactView> findByUsernamePrefix(@Param("userId") UUID userId,
+                                            @Param("pattern") String pattern,
+                                            Pageable pageable);
+
+    /**
+     * Keyset page over all usernames, used to load the in-memory username index.
+     */
+    @Query("SELECT u.id AS userId, u.username AS username FROM User u " +
+           "WHERE u.username > :after ORDER BY u.username")
+    List<UsernameView> findUsernamesAfter(@Param("after") String after, Pageable pageable);
+
+    /**
+     * LIKE pattern matching lowercase usernames that start with the given prefix.
+     * Wildcards in the prefix are escaped.
+     */
+    static String prefixPattern(String prefix) {
+        return prefix.toLowerCase()
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_") + "%";
+    }
+
+    interface UsernameView {
+        UUID getUserId();
+        String getUsername();
+    }
+
+    /**
+     * Lightweight contact row, not a managed entity.
+     */
+    interface ContactView {
+        UUID getUserId();
+        String getUsername();
+        String getAvatarUrl();
+        Boolean getIsOnline();
+        String getStatusMessage();
+    }
 }
@@ -0,0 +1,166 @@
+package com.messenger.security;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free rate limiter (GCRA - Generic Cell Rate Algorithm) with a fixed-size table.
+ *
+ * Each key has a "theoretical arrival time" (TAT): the moment its bucket would be full
+ * again. A request is allowed if TAT - now does not exceed the burst tolerance, and
+ * then moves TAT forward by one emission interval (window / limit). This is
+ * equivalent to a token bucket holding {@code limit} tokens refilled over
+ * {@code window}, but needs a single long of state per key.
+ *
+ * State lives in an {@link AtomicLongArray}; every slot packs a 16-bit key
+ * fingerprint with a 48-bit TAT in microseconds since start (about 8.9 years)
+ * and is updated with one CAS.
+ * The table is 4-way set associative: a key maps to a set of 4 slots and, when
+ * none of them holds its fingerprint, takes over the one with the smallest TAT.
+ * An entry whose TAT is in the past carries no state (its bucket is full), so
+ * evicting it loses nothing; memory stays bounded no matter how many keys are seen.
+ */
+public class GcraRateLimiter implements RequestRateLimiter {
+
+    private static final int WAYS = 4;
+    private static final int TAT_BITS = 48;
+    private static final long TAT_MASK = (1L << TAT_BITS) - 1;
+
+    private final int limit;
+    private final long intervalMicros;
+    private final long toleranceMicros;
+    private final AtomicLongArray slots;
+    private final int setMask;
+    private final LongSupplier nanoClock;
+    private final long originNanos;
+    private final LongAdder activeEvictions = new LongAdder();
+
+    /**
+     * @param limit     requests allowed per window (also the maximum burst)
+     * @param window    window length
+     * @param slotCount table size, rounded up to a power of two
+     */
+    public GcraRateLimiter(int limit, Duration window, int slotCount) {
+        this(limit, window, slotCount, System::nanoTime);
+    }
+
+    GcraRateLimiter(int limit, Duration window, int slotCount, LongSupplier nanoClock) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        int size = Math.max(WAYS, Integer.highestOneBit(Math.max(1, slotCount - 1)) << 1);
+        this.limit = limit;
+        this.intervalMicros = Math.max(1, window.toNanos() / 1000 / limit);
+        this.toleranceMicros = intervalMicros * (limit - 1);
+        this.slots = new AtomicLongArray(size);
+        this.setMask = (size - 1) & ~(WAYS - 1);
+        this.nanoClock = nanoClock;
+        this.originNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * Takes one request from the key's bucket.
+     *
+     * @return remaining requests (>= 0) if allowed; if rejected, a negative value,
+     *         see {@link #isAllowed(long)} and {@link #retryAfterMillis(long)}
+     */
+    @Override
+    public long tryAcquire(String key) {
+        long hash = mix(key.hashCode());
+        long fingerprint = hash >>> TAT_BITS;
+        if (fingerprint == 0) {
+            fingerprint = 1; // 0 marks an empty slot
+        }
+        int base = (int) hash & setMask;
+        long now = nowMicros();
+
+        while (true) {
+            int slot = -1;
+            long current = 0;
+            long tat = 0;
+            boolean found = false;
+
+            long victimTat = Long.MAX_VALUE;
+            for (int i = 0; i < WAYS; i++) {
+                long value = slots.get(base + i);
+                if (value != 0 && value >>> TAT_BITS == fingerprint) {
+                    slot = base + i;
+                    current = value;
+                    tat = value & TAT_MASK;
+                    found = true;
+                    break;
+                }
+                long slotTat = value == 0 ? 0 : value & TAT_MASK;
+                if (slotTat < victimTat) {
+                    victimTat = slotTat;
+                    slot = base + i;
+                    current = value;
+                }
+            }
+
+            long effectiveTat = Math.max(tat, now);
+            long ahead = effectiveTat - now;
+            if (found && ahead > toleranceMicros) {
+                long waitMicros = ahead - toleranceMicros;
+                return rejected((waitMicros + 999) / 1000);
+            }
+
+            long newTat = effectiveTat + intervalMicros;
+            if (slots.compareAndSet(slot, current, (fingerprint << TAT_BITS) | (newTat & TAT_MASK))) {
+                if (!found && current != 0 && victimTat > now) {
+                    activeEvictions.increment();
+                }
+                return (toleranceMicros + intervalMicros - (newTat - now)) / intervalMicros;
+            }
+            // Another thread changed the set, read it again
+        }
+    }
+
+    /**
+     * @return decision rejecting a request that may be retried after the given delay
+     */
+    public static long rejected(long retryAfterMillis) {
+        return -Math.max(0, retryAfterMillis) - 1;
+    }
+
+    public static boolean isAllowed(long decision) {
+        return decision >= 0;
+    }
+
+    /**
+     * @return milliseconds until the next request would be allowed, 0 for allowed decisions
+     */
+    public static long retryAfterMillis(long decision) {
+        return decision >= 0 ? 0 : -decision - 1;
+    }
+
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getCapacity() {
+        return slots.length();
+    }
+
+    /**
+     * Keys evicted while their bucket was still partly drained, i.e. the table was
+     * too small for the number of concurrently active clients.
+     */
+    public long getActiveEvictions() {
+        return activeEvictions.sum();
+    }
+
+    private long nowMicros() {
+        // Offset by one so that a fresh table never looks "ahead" of the clock
+        return (nanoClock.getAsLong() - originNanos) / 1000 + 1;
+    }
+
+    private static long mix(int h) {
+        long z = h * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 32)) * 0xD6E8FEB86659FD93L;
+        return z ^ (z >>> 32);
+    }
+}
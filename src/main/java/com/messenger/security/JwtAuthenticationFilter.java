@@ -1,11 +1,14 @@
 package com.messenger.security;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -24,6 +27,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtTokenProvider jwtTokenProvider;
     private final UserDetailsService userDetailsService;
+    private final ValidatedTokenCache validatedTokenCache;
+    private final TokenDenylist tokenDenylist;
+
+    // Build the principal from uid/roles claims instead of loading the user
+    @Value("${jwt.stateless:false}")
+    private boolean stateless;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -32,10 +41,8 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = getJwtFromRequest(request);
 
-            if (StringUtils.hasText(jwt) && jwtTokenProvider.validateToken(jwt)) {
-                String username = jwtTokenProvider.getUsernameFromToken(jwt);
-
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            if (StringUtils.hasText(jwt)) {
+                UserDetails userDetails = resolveUserDetails(jwt);
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                         userDetails,
                         null,
@@ -67,6 +74,36 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * Verified tokens are served from the cache; otherwise the token is parsed once
+     * (signature, expiry and claims together) and the principal is built from its
+     * claims in stateless mode, or loaded from the database.
+     */
+    private UserDetails resolveUserDetails(String jwt) {
+        ValidatedTokenCache.Entry cached = validatedTokenCache.get(jwt);
+        if (cached != null) {
+            checkNotRevoked(cached.tokenId());
+            return cached.userDetails();
+        }
+
+        Claims claims = jwtTokenProvider.parseClaims(jwt);
+        checkNotRevoked(claims.getId());
+
+        UserDetails userDetails = stateless ? jwtTokenProvider.toUserDetails(claims) : null;
+        if (userDetails == null) {
+            userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+        }
+        long expiresAt = claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE;
+        validatedTokenCache.put(jwt, userDetails, claims.getId(), expiresAt);
+        return userDetails;
+    }
+
+    private void checkNotRevoked(String tokenId) {
+        if (tokenDenylist.isRevoked(tokenId)) {
+            throw new JwtException("Token has been revoked");
+        }
+    }
+
     private String getJwtFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
         if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
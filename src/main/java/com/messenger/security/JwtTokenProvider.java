@@ -6,19 +6,27 @@ import io.jsonwebtoken.security.Keys;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 
 @Slf4j
 @Component
 public class JwtTokenProvider {
 
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_ROLES = "roles";
+
     @Value("${jwt.secret:your-256-bit-secret-key-here-must-be-at-least-32-characters}")
     private String jwtSecret;
 
@@ -28,26 +36,88 @@ public class JwtTokenProvider {
     @Value("${jwt.refresh-expiration:604800000}")
     private long refreshTokenExpirationInMs;
 
+    // Built once, key derivation and parser setup are not free per request
+    private volatile SecretKey signingKey;
+    private volatile JwtParser parser;
+
     private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        SecretKey key = signingKey;
+        if (key == null) {
+            key = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+            signingKey = key;
+        }
+        return key;
+    }
+
+    private JwtParser getParser() {
+        JwtParser p = parser;
+        if (p == null) {
+            p = Jwts.parser()
+                    .verifyWith(getSigningKey())
+                    .build();
+            parser = p;
+        }
+        return p;
     }
 
     public String generateToken(Authentication authentication) {
-        UserDetails userPrincipal = (UserDetails) authentication.getPrincipal();
-        return generateToken(new HashMap<>(), userPrincipal.getUsername());
+        return generateToken(new HashMap<>(), authentication.getName());
     }
 
     public String generateToken(Map<String, Object> extraClaims, String username) {
         return buildToken(extraClaims, username, jwtExpirationInMs);
     }
 
+    /**
+     * Access token that also carries the user's id and roles, enough to build the
+     * principal without loading the user (see {@link #toUserDetails(Claims)}).
+     */
+    public String generateToken(String username, UUID userId, Collection<? extends GrantedAuthority> authorities) {
+        return buildToken(identityClaims(userId, authorities), username, jwtExpirationInMs);
+    }
+
     public String generateTokenForDevice(String username, String deviceId) {
-        Map<String, Object> extraClaims = new HashMap<>();
+        return generateTokenForDevice(username, deviceId, null, null);
+    }
+
+    public String generateTokenForDevice(String username, String deviceId,
+                                         UUID userId, Collection<? extends GrantedAuthority> authorities) {
+        Map<String, Object> extraClaims = identityClaims(userId, authorities);
         extraClaims.put("deviceId", deviceId);
         extraClaims.put("type", "device");
         return buildToken(extraClaims, username, jwtExpirationInMs);
     }
 
+    private Map<String, Object> identityClaims(UUID userId, Collection<? extends GrantedAuthority> authorities) {
+        Map<String, Object> claims = new HashMap<>();
+        if (userId != null) {
+            claims.put(CLAIM_USER_ID, userId.toString());
+        }
+        if (authorities != null) {
+            claims.put(CLAIM_ROLES, authorities.stream()
+                    .map(GrantedAuthority::getAuthority)
+                    .toList());
+        }
+        return claims;
+    }
+
+    /**
+     * Builds the principal from the uid/roles claims.
+     *
+     * @return user details, or null if the token was issued without identity claims
+     */
+    public JwtUserDetails toUserDetails(Claims claims) {
+        String userId = claims.get(CLAIM_USER_ID, String.class);
+        Object roles = claims.get(CLAIM_ROLES);
+        if (userId == null || !(roles instanceof Collection<?> roleNames)) {
+            return null;
+        }
+        List<GrantedAuthority> authorities = roleNames.stream()
+                .map(role -> (GrantedAuthority) new SimpleGrantedAuthority(String.valueOf(role)))
+                .toList();
+        return new JwtUserDetails(UUID.fromString(userId), claims.getSubject(), authorities);
+    }
+
     public String extractDeviceId(String token) {
         try {
             Claims claims = extractAllClaims(token);
@@ -66,6 +136,7 @@ public class JwtTokenProvider {
         Date expiryDate = new Date(now.getTime() + expiration);
 
         return Jwts.builder()
+                .id(UUID.randomUUID().toString())
                 .claims(extraClaims)
                 .subject(subject)
                 .issuedAt(now)
@@ -87,20 +158,24 @@ public class JwtTokenProvider {
         return claimsResolver.apply(claims);
     }
 
+    /**
+     * Verifies the signature and expiry and returns all claims in a single parse.
+     *
+     * @throws JwtException if the token is invalid or expired
+     */
+    public Claims parseClaims(String token) {
+        return extractAllClaims(token);
+    }
+
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
+        return getParser()
                 .parseSignedClaims(token)
                 .getPayload();
     }
 
     public boolean validateToken(String authToken) {
         try {
-            Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(authToken);
+            getParser().parseSignedClaims(authToken);
             return true;
         } catch (SecurityException ex) {
             log.error("Invalid JWT signature");
@@ -0,0 +1,23 @@
+package com.messenger.security;
+
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Principal built from JWT claims in stateless mode. Carries the user's id so
+ * callers do not have to look it up by username.
+ */
+@Getter
+public class JwtUserDetails extends User {
+
+    private final UUID userId;
+
+    public JwtUserDetails(UUID userId, String username, Collection<? extends GrantedAuthority> authorities) {
+        super(username, "", authorities);
+        this.userId = userId;
+    }
+}
@@ -0,0 +1,62 @@
+package com.messenger.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Creates the limiters of {@link RateLimitingFilter} according to rate-limit.mode:
+ * LOCAL keeps limits per node, REDIS shares them across the cluster.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RateLimiterFactory {
+
+    private final ObjectProvider<StringRedisTemplate> redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${rate-limit.mode:LOCAL}")
+    private Mode mode;
+
+    @Value("${rate-limit.table-slots:65536}")
+    private int tableSlots;
+
+    @Value("${rate-limit.redis.lease-size:20}")
+    private int leaseSize;
+
+    @Value("${rate-limit.redis.lease-ttl:1s}")
+    private Duration leaseTtl;
+
+    @Value("${rate-limit.redis.retry-after:5s}")
+    private Duration retryRedisAfter;
+
+    @Value("${rate-limit.redis.max-leases:100000}")
+    private int maxLeases;
+
+    public RequestRateLimiter create(String name, int limit, Duration window) {
+        GcraRateLimiter local = new GcraRateLimiter(limit, window, tableSlots);
+        StringRedisTemplate template = redisTemplate.getIfAvailable();
+        if (mode != Mode.REDIS || template == null) {
+            if (mode == Mode.REDIS) {
+                log.warn("rate-limit.mode=REDIS but Redis is not configured, '{}' uses local limits", name);
+            }
+            return local;
+        }
+        log.info("Rate limiter '{}': {} requests per {}s, cluster-wide via Redis (lease {})",
+                name, limit, window.getSeconds(), leaseSize);
+        return new RedisRateLimiter(name, limit, window, leaseSize, leaseTtl, retryRedisAfter,
+                maxLeases, local, template, meterRegistry);
+    }
+
+    public enum Mode {
+        LOCAL,  // Per-node limits
+        REDIS   // Shared buckets in Redis, local limits if Redis is down
+    }
+}
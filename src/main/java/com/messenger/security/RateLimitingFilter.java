@@ -4,6 +4,8 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
@@ -14,10 +16,6 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.time.Duration;
-import java.time.Instant;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Rate Limiting Filter - защита от DDoS и brute force атак
@@ -33,13 +31,32 @@ public class RateLimitingFilter extends OncePerRequestFilter {
     private static final Duration DEFAULT_WINDOW = Duration.ofMinutes(1); // в минуту
     private static final int AUTH_MAX_REQUESTS = 1000; // для auth endpoints
     private static final Duration AUTH_WINDOW = Duration.ofMinutes(1);
-    private static final int BLOCK_DURATION_MINUTES = 1; // время блокировки
 
-    // Хранилище счетчиков запросов по IP
-    private final Map<String, RequestCounter> requestCounts = new ConcurrentHashMap<>();
-    
-    // Список заблокированных IP
-    private final Map<String, Instant> blockedIps = new ConcurrentHashMap<>();
+    // Счетчики по IP: локальные таблицы фиксированного размера или общие бакеты в Redis
+    private final RequestRateLimiter defaultLimiter;
+    private final RequestRateLimiter authLimiter;
+
+    // Решения по лимитерам (без тега IP, чтобы не раздувать кардинальность метрик)
+    private final Counter defaultAllowed;
+    private final Counter defaultRejected;
+    private final Counter authAllowed;
+    private final Counter authRejected;
+
+    public RateLimitingFilter(RateLimiterFactory rateLimiterFactory, MeterRegistry meterRegistry) {
+        this.defaultLimiter = rateLimiterFactory.create("default", DEFAULT_MAX_REQUESTS, DEFAULT_WINDOW);
+        this.authLimiter = rateLimiterFactory.create("auth", AUTH_MAX_REQUESTS, AUTH_WINDOW);
+        this.defaultAllowed = decisionCounter(meterRegistry, "default", "allowed");
+        this.defaultRejected = decisionCounter(meterRegistry, "default", "rejected");
+        this.authAllowed = decisionCounter(meterRegistry, "auth", "allowed");
+        this.authRejected = decisionCounter(meterRegistry, "auth", "rejected");
+    }
+
+    private static Counter decisionCounter(MeterRegistry meterRegistry, String limiter, String result) {
+        return Counter.builder("messenger.ratelimit.decisions")
+                .tag("limiter", limiter)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, 
@@ -71,31 +88,31 @@ public class RateLimitingFilter extends OncePerRequestFilter {
             return;
         }
         
-        // Проверяем, не заблокирован ли IP - НЕ БЛОКИРУЕМ, просто ограничиваем
-        if (isBlocked(clientIp)) {
-            // Не блокируем, а просто замедляем
-            log.debug("Rate limited IP {} - allowing with warning", clientIp);
-        }
-        
         // Определяем лимиты в зависимости от endpoint
-        int maxRequests = isAuthEndpoint(path) ? AUTH_MAX_REQUESTS : DEFAULT_MAX_REQUESTS;
-        Duration window = isAuthEndpoint(path) ? AUTH_WINDOW : DEFAULT_WINDOW;
+        boolean authEndpoint = isAuthEndpoint(path);
+        RequestRateLimiter limiter = authEndpoint ? authLimiter : defaultLimiter;
+        Duration window = authEndpoint ? AUTH_WINDOW : DEFAULT_WINDOW;
         
         // Проверяем лимит
-        if (isRateLimitExceeded(clientIp, maxRequests, window)) {
+        long decision = limiter.tryAcquire(clientIp);
+        boolean allowed = GcraRateLimiter.isAllowed(decision);
+        (authEndpoint ? (allowed ? authAllowed : authRejected) : (allowed ? defaultAllowed : defaultRejected)).increment();
+        if (!allowed) {
+            long retryAfterSeconds = Math.max(1, (GcraRateLimiter.retryAfterMillis(decision) + 999) / 1000);
             log.warn("Rate limit exceeded for IP {} on endpoint {} (limit: {}/{}s)", 
-                clientIp, path, maxRequests, window.getSeconds());
+                clientIp, path, limiter.getLimit(), window.getSeconds());
             
             // НЕ БЛОКИРУЕМ IP - только возвращаем 429
-            // addRateLimitHeaders(response, clientIp, maxRequests); // REMOVED - causes issues
             response.setStatus(429);
+            response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
             response.setContentType("application/json");
-            response.getWriter().write("{\"error\":\"Too Many Requests\",\"message\":\"Please try again later\",\"retryAfter\":60}");
+            response.getWriter().write("{\"error\":\"Too Many Requests\",\"message\":\"Please try again later\",\"retryAfter\":" 
+                + retryAfterSeconds + "}");
             return;
         }
         
         // Добавляем заголовки с информацией о лимите
-        addRateLimitHeaders(response, clientIp, maxRequests);
+        addRateLimitHeaders(response, limiter.getLimit(), decision, window);
         
         filterChain.doFilter(request, response);
     }
@@ -133,62 +150,6 @@ public class RateLimitingFilter extends OncePerRequestFilter {
         return false;
     }
 
-    /**
-     * Проверяет, не превышен ли лимит запросов
-     */
-    private boolean isRateLimitExceeded(String clientIp, int maxRequests, Duration window) {
-        Instant now = Instant.now();
-        RequestCounter counter = requestCounts.computeIfAbsent(clientIp, 
-                k -> new RequestCounter(now));
-        
-        synchronized (counter) {
-            // Проверяем, не истекло ли окно
-            if (Duration.between(counter.getWindowStart(), now).compareTo(window) > 0) {
-                // Сбрасываем счетчик
-                counter.reset(now);
-            }
-            
-            // Увеличиваем счетчик
-            int currentCount = counter.increment();
-            
-            // Проверяем лимит
-            if (currentCount > maxRequests) {
-                counter.incrementViolation();
-                return true;
-            }
-        }
-        
-        return false;
-    }
-
-    /**
-     * Проверяет, заблокирован ли IP
-     */
-    private boolean isBlocked(String clientIp) {
-        Instant blockTime = blockedIps.get(clientIp);
-        if (blockTime == null) {
-            return false;
-        }
-        
-        // Проверяем, не истекла ли блокировка
-        if (Duration.between(blockTime, Instant.now()).toMinutes() > BLOCK_DURATION_MINUTES) {
-            blockedIps.remove(clientIp);
-            return false;
-        }
-        
-        return true;
-    }
-
-    /**
-     * Блокирует IP адрес
-     */
-    private void blockIp(String clientIp) {
-        blockedIps.put(clientIp, Instant.now());
-        requestCounts.remove(clientIp); // Очищаем счетчик
-        log.warn("🔒 IP {} has been blocked for {} minutes due to rate limit violations", 
-                clientIp, BLOCK_DURATION_MINUTES);
-    }
-
     /**
      * Проверяет, является ли endpoint аутентификационным
      */
@@ -201,14 +162,10 @@ public class RateLimitingFilter extends OncePerRequestFilter {
     /**
      * Добавляет заголовки с информацией о лимите
      */
-    private void addRateLimitHeaders(HttpServletResponse response, String clientIp, int maxRequests) {
-        RequestCounter counter = requestCounts.get(clientIp);
-        if (counter != null) {
-            int remaining = Math.max(0, maxRequests - counter.getCount());
-            response.setHeader("X-RateLimit-Limit", String.valueOf(maxRequests));
-            response.setHeader("X-RateLimit-Remaining", String.valueOf(remaining));
-            response.setHeader("X-RateLimit-Window", "60");
-        }
+    private void addRateLimitHeaders(HttpServletResponse response, int maxRequests, long remaining, Duration window) {
+        response.setHeader("X-RateLimit-Limit", String.valueOf(maxRequests));
+        response.setHeader("X-RateLimit-Remaining", String.valueOf(remaining));
+        response.setHeader("X-RateLimit-Window", String.valueOf(window.getSeconds()));
     }
 
     /**
@@ -243,44 +200,4 @@ public class RateLimitingFilter extends OncePerRequestFilter {
         
         return request.getRemoteAddr();
     }
-
-    /**
-     * Класс для хранения счетчика запросов
-     */
-    private static class RequestCounter {
-        private Instant windowStart;
-        private AtomicInteger count;
-        private AtomicInteger violations;
-
-        public RequestCounter(Instant windowStart) {
-            this.windowStart = windowStart;
-            this.count = new AtomicInteger(0);
-            this.violations = new AtomicInteger(0);
-        }
-
-        public void reset(Instant newWindowStart) {
-            this.windowStart = newWindowStart;
-            this.count.set(0);
-        }
-
-        public int increment() {
-            return count.incrementAndGet();
-        }
-
-        public void incrementViolation() {
-            violations.incrementAndGet();
-        }
-
-        public Instant getWindowStart() {
-            return windowStart;
-        }
-
-        public int getCount() {
-            return count.get();
-        }
-
-        public int getViolations() {
-            return violations.get();
-        }
-    }
 }
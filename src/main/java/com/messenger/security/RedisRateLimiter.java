@@ -0,0 +1,181 @@
+package com.messenger.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Cluster-wide limiter: one token bucket per key in Redis, shared by all nodes.
+ *
+ * To keep Redis off the hot path a node takes tokens in batches (leases) with an
+ * atomic Lua script and hands them out locally; only every lease-size-th request
+ * of a key goes to Redis. A rejection is remembered locally until the bucket
+ * refills. Tokens of a lease that expires unused are lost, so the limiter can
+ * under-admit slightly but never lets the cluster exceed the limit.
+ *
+ * If Redis is unreachable the limiter falls back to the node-local
+ * {@link GcraRateLimiter} with the same limit and retries Redis after a pause.
+ */
+@Slf4j
+public class RedisRateLimiter implements RequestRateLimiter {
+
+    /**
+     * KEYS[1] - bucket; ARGV: capacity, refill per ms, requested tokens, key TTL ms.
+     * Returns {granted, ms until the next token (when nothing was granted), tokens left}.
+     * Time comes from the Redis server, so node clocks do not matter.
+     */
+    @SuppressWarnings("unchecked")
+    static final RedisScript<List<Long>> ACQUIRE_SCRIPT = RedisScript.of("""
+            local capacity = tonumber(ARGV[1])
+            local rate = tonumber(ARGV[2])
+            local requested = tonumber(ARGV[3])
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+            local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+            local tokens = tonumber(bucket[1])
+            local ts = tonumber(bucket[2])
+            if tokens == nil then
+                tokens = capacity
+                ts = now
+            end
+            tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate)
+            local granted = math.min(requested, math.floor(tokens))
+            tokens = tokens - granted
+            redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(now))
+            redis.call('PEXPIRE', KEYS[1], ARGV[4])
+            local wait = 0
+            if granted == 0 then
+                wait = math.ceil((1 - tokens) / rate)
+            end
+            return {granted, wait, math.floor(tokens)}
+            """, (Class<List<Long>>) (Class<?>) List.class);
+
+    private final String name;
+    private final int limit;
+    private final Duration window;
+    private final int leaseSize;
+    private final long leaseTtlMillis;
+    private final long retryRedisAfterMillis;
+    private final StringRedisTemplate redisTemplate;
+    private final GcraRateLimiter fallback;
+    private final Cache<String, Lease> leases;
+
+    private final Counter redisCalls;
+    private final Counter redisErrors;
+    private final Counter fallbackDecisions;
+
+    private volatile long redisDownUntil;
+
+    public RedisRateLimiter(String name, int limit, Duration window,
+                            int leaseSize, Duration leaseTtl, Duration retryRedisAfter,
+                            int maxLeases, GcraRateLimiter fallback,
+                            StringRedisTemplate redisTemplate, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.limit = limit;
+        this.window = window;
+        this.leaseSize = Math.max(1, Math.min(leaseSize, limit));
+        this.leaseTtlMillis = leaseTtl.toMillis();
+        this.retryRedisAfterMillis = retryRedisAfter.toMillis();
+        this.fallback = fallback;
+        this.redisTemplate = redisTemplate;
+        this.leases = Caffeine.newBuilder()
+                .maximumSize(maxLeases)
+                .expireAfterAccess(Duration.ofMillis(Math.max(leaseTtlMillis, window.toMillis())))
+                .build();
+
+        this.redisCalls = Counter.builder("messenger.ratelimit.redis.calls")
+                .tag("limiter", name)
+                .description("Lease requests sent to Redis")
+                .register(meterRegistry);
+        this.redisErrors = Counter.builder("messenger.ratelimit.redis.errors")
+                .tag("limiter", name)
+                .description("Failed Redis lease requests")
+                .register(meterRegistry);
+        this.fallbackDecisions = Counter.builder("messenger.ratelimit.fallback.decisions")
+                .tag("limiter", name)
+                .description("Decisions made by the local limiter while Redis was unavailable")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public long tryAcquire(String key) {
+        long now = System.currentTimeMillis();
+        if (now < redisDownUntil) {
+            fallbackDecisions.increment();
+            return fallback.tryAcquire(key);
+        }
+
+        Lease lease = leases.get(key, k -> new Lease());
+        synchronized (lease) {
+            if (now < lease.blockedUntil) {
+                return GcraRateLimiter.rejected(lease.blockedUntil - now);
+            }
+            if (lease.tokens > 0 && now < lease.expiresAt) {
+                lease.tokens--;
+                return lease.tokens + lease.bucketRemaining;
+            }
+
+            List<Long> result;
+            try {
+                redisCalls.increment();
+                result = redisTemplate.execute(ACQUIRE_SCRIPT, List.of(redisKey(key)),
+                        String.valueOf(limit),
+                        String.valueOf((double) limit / window.toMillis()),
+                        String.valueOf(leaseSize),
+                        String.valueOf(window.toMillis() * 2));
+            } catch (RuntimeException e) {
+                redisErrors.increment();
+                redisDownUntil = now + retryRedisAfterMillis;
+                log.warn("Redis rate limiter '{}' unavailable, using local limits for {} ms: {}",
+                        name, retryRedisAfterMillis, e.getMessage());
+                fallbackDecisions.increment();
+                return fallback.tryAcquire(key);
+            }
+
+            long granted = toLong(result, 0);
+            if (granted <= 0) {
+                long wait = Math.max(1, toLong(result, 1));
+                lease.tokens = 0;
+                lease.blockedUntil = now + wait;
+                return GcraRateLimiter.rejected(wait);
+            }
+            lease.tokens = (int) granted - 1;
+            lease.bucketRemaining = toLong(result, 2);
+            lease.expiresAt = now + leaseTtlMillis;
+            return lease.tokens + lease.bucketRemaining;
+        }
+    }
+
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    private String redisKey(String key) {
+        return "ratelimit:" + name + ":" + key;
+    }
+
+    private static long toLong(List<Long> result, int index) {
+        if (result == null || result.size() <= index || result.get(index) == null) {
+            return 0;
+        }
+        return result.get(index);
+    }
+
+    /**
+     * Tokens of one key taken from Redis and not handed out yet. Guarded by its own monitor.
+     */
+    private static class Lease {
+        private int tokens;
+        private long bucketRemaining;
+        private long expiresAt;
+        private long blockedUntil;
+    }
+}
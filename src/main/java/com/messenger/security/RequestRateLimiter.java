@@ -0,0 +1,16 @@
+package com.messenger.security;
+
+/**
+ * Per-key request limiter used by {@link RateLimitingFilter}.
+ *
+ * Decisions use the encoding of {@link GcraRateLimiter}: a value >= 0 means the
+ * request is allowed and is the number of remaining requests, a negative value
+ * means it is rejected and carries the retry delay
+ * (see {@link GcraRateLimiter#isAllowed(long)}, {@link GcraRateLimiter#retryAfterMillis(long)}).
+ */
+public interface RequestRateLimiter {
+
+    long tryAcquire(String key);
+
+    int getLimit();
+}
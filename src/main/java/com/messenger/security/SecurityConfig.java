@@ -45,6 +45,7 @@ public class SecurityConfig {
                                 "/api/auth/**",
                                 "/ws/**",
                                 "/ws",
+                                "/ws-media",
                                 "/swagger-ui/**",
                                 "/v3/api-docs/**",
                                 "/actuator/health",
@@ -0,0 +1,122 @@
+package com.messenger.security;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Revoked tokens (access and refresh), by token id (jti).
+ *
+ * An entry only has to live until the token would have expired anyway, so the map
+ * stays small: at most the tokens logged out within one token lifetime. Expired
+ * entries are purged periodically.
+ *
+ * Lookups are local, so every WebSocket frame can be checked. Revocations are shared
+ * through Redis: a sorted set (jti scored by expiry) that a starting node loads, and
+ * a pub/sub channel that applies them to the map of every running node. If Redis is
+ * unreachable a revocation still applies on the node that made it.
+ */
+@Slf4j
+@Component
+public class TokenDenylist implements MessageListener {
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final String key;
+    private final String channel;
+
+    // jti -> token expiry, epoch millis
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    public TokenDenylist(StringRedisTemplate redisTemplate,
+                         RedisMessageListenerContainer listenerContainer,
+                         @Value("${jwt.denylist.key:messenger:jwt:denylist}") String key,
+                         @Value("${jwt.denylist.channel:messenger:jwt:revoked}") String channel,
+                         MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.key = key;
+        this.channel = channel;
+        Gauge.builder("messenger.jwt.denylist.size", revoked, Map::size)
+                .description("Revoked tokens that have not expired yet")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(channel));
+        try {
+            Set<ZSetOperations.TypedTuple<String>> entries = redisTemplate.opsForZSet()
+                    .rangeByScoreWithScores(key, System.currentTimeMillis(), Double.POSITIVE_INFINITY);
+            if (entries != null) {
+                entries.forEach(entry -> revoked.put(entry.getValue(), entry.getScore().longValue()));
+            }
+            log.info("Loaded {} revoked tokens", revoked.size());
+        } catch (Exception e) {
+            log.warn("Failed to load revoked tokens from Redis: {}", e.getMessage());
+        }
+    }
+
+    public void revoke(String tokenId, long expiresAtMillis) {
+        if (tokenId == null || expiresAtMillis <= System.currentTimeMillis()) {
+            return;
+        }
+        revoked.put(tokenId, expiresAtMillis);
+        try {
+            redisTemplate.opsForZSet().add(key, tokenId, expiresAtMillis);
+            redisTemplate.convertAndSend(channel, tokenId + " " + expiresAtMillis);
+        } catch (Exception e) {
+            log.warn("Failed to share token revocation, other nodes accept the token until it expires: {}",
+                    e.getMessage());
+        }
+    }
+
+    public boolean isRevoked(String tokenId) {
+        return tokenId != null && revoked.containsKey(tokenId);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(' ');
+        try {
+            long expiresAt = Long.parseLong(body.substring(separator + 1));
+            if (separator > 0 && expiresAt > System.currentTimeMillis()) {
+                revoked.put(body.substring(0, separator), expiresAt);
+            }
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed token revocation: {}", body);
+        }
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        int before = revoked.size();
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+        int purged = before - revoked.size();
+        if (purged > 0) {
+            log.debug("Purged {} expired entries from token denylist", purged);
+        }
+        try {
+            redisTemplate.opsForZSet().removeRangeByScore(key, Double.NEGATIVE_INFINITY, now);
+        } catch (Exception e) {
+            log.debug("Failed to purge revoked tokens in Redis: {}", e.getMessage());
+        }
+    }
+}
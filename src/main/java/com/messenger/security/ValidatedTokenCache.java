@@ -0,0 +1,91 @@
+package com.messenger.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * Bounded cache of already verified tokens, so repeated requests with the same
+ * token skip signature verification and the user lookup.
+ *
+ * Keys are SHA-256 hashes of the token (raw tokens are never kept in memory
+ * longer than the request). An entry lives for the configured TTL but never past
+ * the token's own expiry.
+ */
+@Component
+public class ValidatedTokenCache {
+
+    private final Cache<String, Entry> cache;
+
+    public ValidatedTokenCache(@Value("${jwt.validation-cache.max-size:10000}") long maxSize,
+                               @Value("${jwt.validation-cache.ttl:5m}") Duration ttl,
+                               MeterRegistry meterRegistry) {
+        long ttlNanos = ttl.toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                        long untilExpiry = Duration.ofMillis(entry.expiresAtMillis() - System.currentTimeMillis()).toNanos();
+                        return Math.max(0, Math.min(ttlNanos, untilExpiry));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, entry, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwt.validated");
+    }
+
+    /**
+     * @return cached principal for the token, or null if the token has not been verified recently
+     */
+    public Entry get(String token) {
+        Entry entry = cache.getIfPresent(hash(token));
+        if (entry != null && entry.expiresAtMillis() <= System.currentTimeMillis()) {
+            return null;
+        }
+        return entry;
+    }
+
+    public void put(String token, UserDetails userDetails, String tokenId, long expiresAtMillis) {
+        cache.put(hash(token), new Entry(userDetails, tokenId, expiresAtMillis));
+    }
+
+    public void invalidate(String token) {
+        cache.invalidate(hash(token));
+    }
+
+    static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public record Entry(UserDetails userDetails, String tokenId, long expiresAtMillis) {
+    }
+}
@@ -3,17 +3,24 @@ package com.messenger.service;
 import com.messenger.dto.AuthDTOs.*;
 import com.messenger.encryption.EncryptionService;
 import com.messenger.entity.User;
+import com.messenger.event.UserEvents;
 import com.messenger.logging.Auditable;
 import com.messenger.logging.MessengerLogger;
 import com.messenger.repository.DeviceRepository;
 import com.messenger.repository.UserRepository;
 import com.messenger.security.JwtTokenProvider;
+import com.messenger.security.TokenDenylist;
+import com.messenger.security.ValidatedTokenCache;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -21,6 +28,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.security.KeyPair;
 import java.util.Base64;
+import java.util.List;
 
 @Slf4j
 @Service
@@ -31,8 +39,11 @@ public class AuthService {
     private final DeviceRepository deviceRepository;
     private final AuthenticationManager authenticationManager;
     private final JwtTokenProvider jwtTokenProvider;
+    private final ValidatedTokenCache validatedTokenCache;
+    private final TokenDenylist tokenDenylist;
     private final PasswordEncoder passwordEncoder;
     private final EncryptionService encryptionService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional
     @Auditable(action = "USER_REGISTRATION")
@@ -73,6 +84,7 @@ public class AuthService {
                 .build();
 
         userRepository.save(user);
+        eventPublisher.publishEvent(new UserEvents.Registered(user.getId(), user.getUsername()));
 
         MessengerLogger.audit("USER_REGISTRATION", request.getUsername(),
                 "Email: " + request.getEmail());
@@ -100,18 +112,19 @@ public class AuthService {
 
             SecurityContextHolder.getContext().setAuthentication(authentication);
 
+            User user = userRepository.findByUsername(username)
+                    .orElseThrow(() -> new IllegalArgumentException("User not found"));
+
             // Generate token with device ID if provided
             String accessToken;
             if (deviceId != null && !deviceId.isEmpty()) {
-                accessToken = jwtTokenProvider.generateTokenForDevice(username, deviceId);
+                accessToken = jwtTokenProvider.generateTokenForDevice(username, deviceId,
+                        user.getId(), authentication.getAuthorities());
             } else {
-                accessToken = jwtTokenProvider.generateToken(authentication);
+                accessToken = jwtTokenProvider.generateToken(username, user.getId(), authentication.getAuthorities());
             }
             String refreshToken = jwtTokenProvider.generateRefreshToken(username);
 
-            User user = userRepository.findByUsername(username)
-                    .orElseThrow(() -> new IllegalArgumentException("User not found"));
-
             // Update online status
             user.setIsOnline(true);
             userRepository.save(user);
@@ -173,14 +186,18 @@ public class AuthService {
         if (!jwtTokenProvider.validateToken(refreshToken)) {
             throw new IllegalArgumentException("Invalid refresh token");
         }
+        Claims refreshClaims = jwtTokenProvider.parseClaims(refreshToken);
+        if (tokenDenylist.isRevoked(refreshClaims.getId())) {
+            MessengerLogger.securityAuthFailure(refreshClaims.getSubject(), "REFRESH_TOKEN_REVOKED", "unknown");
+            throw new IllegalArgumentException("Invalid refresh token");
+        }
 
-        String username = jwtTokenProvider.getUsernameFromToken(refreshToken);
+        String username = refreshClaims.getSubject();
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
 
-        String newAccessToken = jwtTokenProvider.generateToken(
-                new org.springframework.security.authentication.UsernamePasswordAuthenticationToken(
-                        user.getUsername(), null, java.util.Collections.emptyList()));
+        String newAccessToken = jwtTokenProvider.generateToken(user.getUsername(), user.getId(),
+                List.of(new SimpleGrantedAuthority("ROLE_USER")));
         String newRefreshToken = jwtTokenProvider.generateRefreshToken(username);
 
         return AuthResponseDTO.builder()
@@ -192,7 +209,11 @@ public class AuthService {
                 .build();
     }
 
-    public void logout(String token) {
+    /**
+     * Revokes the access token and, if the client sends it, the refresh token of the
+     * same user, so neither can be used on any node until it expires.
+     */
+    public void logout(String token, String refreshToken) {
         if (token == null || token.isEmpty()) {
             log.warn("Logout called with null or empty token");
             return;
@@ -202,7 +223,13 @@ public class AuthService {
                 log.warn("Logout called with invalid token");
                 return;
             }
-            String username = jwtTokenProvider.getUsernameFromToken(token);
+            Claims claims = jwtTokenProvider.parseClaims(token);
+            String username = claims.getSubject();
+            revoke(claims);
+            if (refreshToken != null && !refreshToken.isEmpty()) {
+                revokeRefreshToken(refreshToken, username);
+            }
+            validatedTokenCache.invalidate(token);
             userRepository.findByUsername(username).ifPresent(user -> {
                 user.setIsOnline(false);
                 userRepository.save(user);
@@ -213,6 +240,25 @@ public class AuthService {
         }
     }
 
+    private void revokeRefreshToken(String refreshToken, String username) {
+        try {
+            Claims claims = jwtTokenProvider.parseClaims(refreshToken);
+            if (username.equals(claims.getSubject())) {
+                revoke(claims);
+            } else {
+                log.warn("Logout of {} sent a refresh token of another user", username);
+            }
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("Refresh token not revoked on logout: {}", e.getMessage());
+        }
+    }
+
+    private void revoke(Claims claims) {
+        if (claims.getExpiration() != null) {
+            tokenDenylist.revoke(claims.getId(), claims.getExpiration().getTime());
+        }
+    }
+
     public PublicKeyDTO getPublicKey(String username) {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
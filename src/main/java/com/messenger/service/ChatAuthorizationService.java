@@ -0,0 +1,169 @@
+package com.messenger.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.messenger.repository.UserChatRepository;
+import com.messenger.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Resolves usernames and checks chat membership for the hot paths
+ * (every REST call and STOMP frame) without going to the database each time.
+ *
+ * Two bounded in-process caches are kept:
+ * <ul>
+ *   <li>username -> userId</li>
+ *   <li>chatId -> sorted array of member ids, searched with binary search</li>
+ * </ul>
+ * Membership entries are evicted by the services that change membership
+ * (add, remove, join, delete). The eviction is published on a Redis channel
+ * so every node drops its entry; the TTL only bounds staleness if a message
+ * is lost.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChatAuthorizationService {
+
+    private final UserRepository userRepository;
+    private final UserChatRepository userChatRepository;
+    private final MeterRegistry meterRegistry;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    @Value("${chat.authorization-cache.max-users:100000}")
+    private long maxUsers;
+
+    @Value("${chat.authorization-cache.max-members:1000000}")
+    private long maxMembers;
+
+    @Value("${chat.authorization-cache.ttl:5m}")
+    private Duration ttl;
+
+    @Value("${chat.authorization-cache.invalidation-channel:messenger:authz:chat-evict}")
+    private String invalidationChannel;
+
+    private Cache<String, UUID> userIds;
+    private Cache<UUID, UUID[]> chatMembers;
+
+    @PostConstruct
+    void init() {
+        userIds = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+
+        // Weighed by member count so a few huge chats cannot crowd out memory
+        chatMembers = Caffeine.newBuilder()
+                .maximumWeight(maxMembers)
+                .weigher((UUID chatId, UUID[] members) -> Math.max(1, members.length))
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, userIds, "authz.userIds");
+        CaffeineCacheMetrics.monitor(meterRegistry, chatMembers, "authz.chatMembers");
+
+        listenerContainer.addMessageListener(this::onEvictMessage, new ChannelTopic(invalidationChannel));
+    }
+
+    public Optional<UUID> findUserId(String username) {
+        // Unknown usernames are not cached, the loader returns null for them
+        return Optional.ofNullable(userIds.get(username,
+                name -> userRepository.findIdByUsername(name).orElse(null)));
+    }
+
+    public UUID resolveUserId(String username) {
+        return findUserId(username)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+    }
+
+    public boolean isMember(UUID userId, UUID chatId) {
+        UUID[] members = chatMembers.get(chatId, this::loadMembers);
+        return Arrays.binarySearch(members, userId) >= 0;
+    }
+
+    /**
+     * Resolves the user and checks that they belong to the chat.
+     *
+     * @return id of the user
+     */
+    public UUID requireMember(String username, UUID chatId) {
+        return requireMember(resolveUserId(username), chatId);
+    }
+
+    /**
+     * Same for an already resolved user (e.g. the id cached with a STOMP session).
+     *
+     * @return id of the user
+     */
+    public UUID requireMember(UUID userId, UUID chatId) {
+        if (!isMember(userId, chatId)) {
+            throw new RuntimeException("User is not a member of this chat");
+        }
+        return userId;
+    }
+
+    /**
+     * Drops cached membership of a chat on every node. Inside a transaction the entry
+     * is dropped again after commit, and only then published, so a concurrent reader
+     * cannot re-cache the old member list.
+     */
+    public void evictChat(UUID chatId) {
+        chatMembers.invalidate(chatId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    chatMembers.invalidate(chatId);
+                    publishEviction(chatId);
+                }
+            });
+        } else {
+            publishEviction(chatId);
+        }
+    }
+
+    private void publishEviction(UUID chatId) {
+        try {
+            redisTemplate.convertAndSend(invalidationChannel, chatId.toString());
+        } catch (Exception e) {
+            // Other nodes fall back to the TTL
+            log.warn("Failed to publish membership eviction for chat {}: {}", chatId, e.getMessage());
+        }
+    }
+
+    private void onEvictMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            chatMembers.invalidate(UUID.fromString(body));
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring malformed membership eviction: {}", body);
+        }
+    }
+
+    private UUID[] loadMembers(UUID chatId) {
+        UUID[] members = userChatRepository.findUserIdsByChatId(chatId).toArray(new UUID[0]);
+        Arrays.sort(members);
+        return members;
+    }
+}
@@ -0,0 +1,94 @@
+package com.messenger.service;
+
+import com.messenger.cache.TwoTierCache;
+import com.messenger.event.ChatEvents;
+import com.messenger.repository.UserChatRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the per-user chat caches (userChats, chatById) in sync with chat changes.
+ *
+ * Every member's cached chat list shows the last message and unread count, so a
+ * message or membership change evicts the entries of all members, not only of
+ * the user who made the change. Eviction runs after commit, so a concurrent
+ * request cannot re-cache data from before the change, and asynchronously, so
+ * the member lookup and the Redis UNLINK of a large group stay off the sender's
+ * request thread. Presence is not part of the cached data (see {@link PresenceService}).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChatCacheInvalidator {
+
+    static final String USER_CHATS = "userChats";
+    static final String CHAT_BY_ID = "chatById";
+
+    private final CacheManager cacheManager;
+    private final UserChatRepository userChatRepository;
+
+    @Async
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMessageSent(ChatEvents.MessageSent event) {
+        evictForMembers(event.getChatId(), List.of());
+    }
+
+    @Async
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMembershipChanged(ChatEvents.MembershipChanged event) {
+        evictForMembers(event.getChatId(), event.getFormerMembers());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onChatRead(ChatEvents.ChatRead event) {
+        // Unread counts are per user, other members' entries are unaffected
+        evict(event.getChatId(), List.of(event.getUsername()));
+    }
+
+    private void evictForMembers(UUID chatId, Collection<String> formerMembers) {
+        Set<String> usernames = new HashSet<>(userChatRepository.findUsernamesByChatId(chatId));
+        usernames.addAll(formerMembers);
+        evict(chatId, usernames);
+    }
+
+    private void evict(UUID chatId, Collection<String> usernames) {
+        if (usernames.isEmpty()) {
+            return;
+        }
+        evictKeys(USER_CHATS, usernames);
+        // Same key as @Cacheable on ChatService.getChatById
+        evictKeys(CHAT_BY_ID, usernames.stream()
+                .map(username -> chatId + "_" + username)
+                .collect(Collectors.toList()));
+    }
+
+    private void evictKeys(String cacheName, Collection<String> keys) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null) {
+            return;
+        }
+        try {
+            if (cache instanceof TwoTierCache twoTierCache) {
+                twoTierCache.evictAll(keys);
+            } else {
+                keys.forEach(cache::evict);
+            }
+        } catch (Exception e) {
+            // The transaction is already committed; entries expire by TTL
+            log.warn("Failed to evict {} entries from cache {}: {}", keys.size(), cacheName, e.getMessage());
+        }
+    }
+}
@@ -2,21 +2,23 @@ package com.messenger.service;
 
 import com.messenger.dto.ChatDTOs;
 import com.messenger.dto.ChatDTOs.*;
-import com.messenger.dto.FileAttachmentDTO;
 import com.messenger.dto.MessageDTO;
-import com.messenger.dto.VoiceMessageDTO;
 import com.messenger.entity.*;
+import com.messenger.event.ChatEvents;
 import com.messenger.repository.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -29,11 +31,15 @@ public class ChatService {
         private final UserRepository userRepository;
         private final UserChatRepository userChatRepository;
         private final MessageRepository messageRepository;
-        private final MessageStatusRepository messageStatusRepository;
-        private final VoiceMessageRepository voiceMessageRepository;
+        private final ReadStateService readStateService;
+        private final ChatSummaryRepository chatSummaryRepository;
+        private final ChatAuthorizationService chatAuthorizationService;
+        private final ApplicationEventPublisher eventPublisher;
+
+        private static final int MAX_CONTACTS_PAGE = 100;
+        private static final int MIN_DIRECTORY_PREFIX = 2;
 
         @Transactional
-        @CacheEvict(value = "userChats", key = "#creatorUsername")
         public ChatDTO createChat(CreateChatRequest request, String creatorUsername) {
                 User creator = userRepository.findByUsername(creatorUsername)
                                 .orElseThrow(() -> new RuntimeException("User not found"));
@@ -67,6 +73,8 @@ public class ChatService {
                         }
                 }
 
+                onMembershipChanged(chat.getId(), List.of());
+
                 log.info("Chat created: {} by {}", chat.getId(), creatorUsername);
                 return mapToDTO(chat, creator.getId());
         }
@@ -75,13 +83,39 @@ public class ChatService {
         @Cacheable(value = "userChats", key = "#username")
         public List<ChatDTO> getUserChats(String username) {
                 log.debug("Fetching chats for user: {} (not cached)", username);
-                User user = userRepository.findByUsername(username)
-                                .orElseThrow(() -> new RuntimeException("User not found"));
+                UUID userId = chatAuthorizationService.resolveUserId(username);
 
-                List<Chat> chats = chatRepository.findByUserId(user.getId());
+                // One query for chat rows with their summaries and one for all participants
+                List<ChatSummaryRepository.ChatListItem> items = chatSummaryRepository
+                                .findChatListByUserId(userId);
+                if (items.isEmpty()) {
+                        return List.of();
+                }
 
-                return chats.stream()
-                                .map(chat -> mapToDTO(chat, user.getId()))
+                Map<UUID, List<ChatParticipantDTO>> participantsByChat = userChatRepository
+                                .findWithUserByChatIdIn(items.stream()
+                                                .map(ChatSummaryRepository.ChatListItem::getChatId)
+                                                .collect(Collectors.toList()))
+                                .stream()
+                                .collect(Collectors.groupingBy(uc -> uc.getChat().getId(),
+                                                Collectors.mapping(this::mapToParticipantDTO, Collectors.toList())));
+
+                // Chats without a summary row fall back to a single top-1-per-chat lookup
+                List<UUID> unsummarized = items.stream()
+                                .filter(item -> item.getMemberCount() == null)
+                                .map(ChatSummaryRepository.ChatListItem::getChatId)
+                                .collect(Collectors.toList());
+                Map<UUID, MessageDTO> fallbackPreviews = unsummarized.isEmpty()
+                                ? Map.of()
+                                : messageRepository.findLastMessagePreviews(unsummarized).stream()
+                                                .collect(Collectors.toMap(MessageRepository.LastMessagePreview::getChatId,
+                                                                this::mapToMessageDTO));
+
+                return items.stream()
+                                .map(item -> mapToDTO(item,
+                                                participantsByChat.getOrDefault(item.getChatId(), List.of()),
+                                                fallbackPreviews.get(item.getChatId()),
+                                                userId))
                                 .collect(Collectors.toList());
         }
 
@@ -89,17 +123,12 @@ public class ChatService {
         @Cacheable(value = "chatById", key = "#chatId.toString() + '_' + #username")
         public ChatDTO getChatById(UUID chatId, String username) {
                 log.debug("Fetching chat {} for user: {} (not cached)", chatId, username);
-                User user = userRepository.findByUsername(username)
-                                .orElseThrow(() -> new RuntimeException("User not found"));
+                UUID userId = chatAuthorizationService.requireMember(username, chatId);
 
                 Chat chat = chatRepository.findById(chatId)
                                 .orElseThrow(() -> new RuntimeException("Chat not found"));
 
-                if (!userChatRepository.existsByUserIdAndChatId(user.getId(), chatId)) {
-                        throw new RuntimeException("User is not a member of this chat");
-                }
-
-                return mapToDTO(chat, user.getId());
+                return mapToDTO(chat, userId);
         }
 
         @Transactional
@@ -133,7 +162,10 @@ public class ChatService {
                                 .joinedAt(LocalDateTime.now())
                                 .build();
 
-                userChatRepository.save(membership);
+                userChatRepository.saveAndFlush(membership);
+                // History before joining is not unread for the new member
+                userChatRepository.markChatRead(participant.getId(), chatId);
+                onMembershipChanged(chatId, List.of());
                 log.info("User {} added to chat {} by {}", participantUsername, chatId, adminUsername);
         }
 
@@ -157,6 +189,7 @@ public class ChatService {
                                 .orElseThrow(() -> new RuntimeException("User is not a member"));
 
                 userChatRepository.delete(participantMembership);
+                onMembershipChanged(chatId, List.of(participantUsername));
                 log.info("User {} removed from chat {} by {}", participantUsername, chatId, adminUsername);
         }
 
@@ -182,7 +215,6 @@ public class ChatService {
         }
 
         @Transactional
-        @CacheEvict(value = "userChats", key = "#username")
         public void deleteChat(UUID chatId, String username) {
                 User user = userRepository.findByUsername(username)
                                 .orElseThrow(() -> new RuntimeException("User not found"));
@@ -197,32 +229,48 @@ public class ChatService {
                         throw new RuntimeException("Only admins can delete group chats");
                 }
 
-                List<UserChat> allMemberships = userChatRepository.findByChatId(chatId);
+                List<UserChat> allMemberships = userChatRepository.findWithUserByChatIdIn(List.of(chatId));
+                List<String> formerMembers = allMemberships.stream()
+                                .map(uc -> uc.getUser().getUsername())
+                                .collect(Collectors.toList());
                 userChatRepository.deleteAll(allMemberships);
 
                 List<Message> messages = messageRepository.findByChatId(chatId);
                 messageRepository.deleteAll(messages);
 
                 chatRepository.delete(chat);
+                chatAuthorizationService.evictChat(chatId);
+                eventPublisher.publishEvent(new ChatEvents.MembershipChanged(chatId, formerMembers));
                 log.info("Chat {} deleted by {}", chatId, username);
         }
 
+        /**
+         * Returns one page of contacts ordered by username. By default only users who share
+         * a chat with the caller are searched; the global directory requires a prefix.
+         */
         @Transactional(readOnly = true)
-        public List<ContactDTO> getContacts(String username) {
-                User user = userRepository.findByUsername(username)
-                                .orElseThrow(() -> new RuntimeException("User not found"));
+        public List<ContactDTO> getContacts(String username, String query, ContactScope scope, int page, int size) {
+                UUID userId = chatAuthorizationService.resolveUserId(username);
 
-                List<User> allUsers = userRepository.findAll().stream()
-                                .filter(u -> !u.getId().equals(user.getId()))
-                                .collect(Collectors.toList());
+                String prefix = query != null ? query.trim().toLowerCase() : "";
+                if (scope == ContactScope.ALL && prefix.length() < MIN_DIRECTORY_PREFIX) {
+                        throw new RuntimeException("Search query must be at least " + MIN_DIRECTORY_PREFIX
+                                        + " characters");
+                }
 
-                return allUsers.stream()
-                                .map(u -> ContactDTO.builder()
-                                                .userId(u.getId().toString())
-                                                .username(u.getUsername())
-                                                .avatarUrl(u.getAvatarUrl())
-                                                .isOnline(u.getIsOnline())
-                                                .statusMessage(u.getStatusMessage())
+                String pattern = UserRepository.prefixPattern(prefix);
+                Pageable pageable = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), MAX_CONTACTS_PAGE));
+                Slice<UserRepository.ContactView> contacts = scope == ContactScope.ALL
+                                ? userRepository.findByUsernamePrefix(userId, pattern, pageable)
+                                : userRepository.findCoMembers(userId, pattern, pageable);
+
+                return contacts.stream()
+                                .map(c -> ContactDTO.builder()
+                                                .userId(c.getUserId().toString())
+                                                .username(c.getUsername())
+                                                .avatarUrl(c.getAvatarUrl())
+                                                .isOnline(c.getIsOnline())
+                                                .statusMessage(c.getStatusMessage())
                                                 .build())
                                 .collect(Collectors.toList());
         }
@@ -231,36 +279,19 @@ public class ChatService {
                 List<UserChat> memberships = userChatRepository.findByChatId(chat.getId());
 
                 List<ChatParticipantDTO> participants = memberships.stream()
-                                .map(uc -> ChatParticipantDTO.builder()
-                                                .userId(uc.getUser().getId().toString())
-                                                .username(uc.getUser().getUsername())
-                                                .avatarUrl(uc.getUser().getAvatarUrl())
-                                                .isAdmin(uc.getIsAdmin())
-                                                .joinedAt(uc.getJoinedAt())
-                                                .isOnline(uc.getUser().getIsOnline())
-                                                .build())
+                                .map(this::mapToParticipantDTO)
                                 .collect(Collectors.toList());
 
-                // Determine chat name (especially for PERSONAL chats)
-                String displayName = chat.getChatName();
-                if (chat.getChatType() == Chat.ChatType.PERSONAL) {
-                        displayName = participants.stream()
-                                        .filter(p -> !p.getUserId().equals(currentUserId.toString()))
-                                        .map(ChatParticipantDTO::getUsername)
-                                        .findFirst()
-                                        .orElse(chat.getChatName());
-                }
+                String displayName = resolveDisplayName(chat.getChatType(), chat.getChatName(),
+                                participants, currentUserId);
 
-                // Get last message
-                List<Message> lastMessages = messageRepository
-                                .findByChatIdAndIsDeletedFalseOrderByCreatedAtDesc(chat.getId());
-                MessageDTO lastMessage = null;
-                if (!lastMessages.isEmpty()) {
-                        lastMessage = mapToMessageDTO(lastMessages.get(0));
-                }
+                MessageDTO lastMessage = messageRepository.findLastMessagePreviews(List.of(chat.getId())).stream()
+                                .findFirst()
+                                .map(this::mapToMessageDTO)
+                                .orElse(null);
 
                 // Count unread messages
-                long unreadCount = messageStatusRepository.countUnreadByUserIdAndChatId(currentUserId, chat.getId());
+                long unreadCount = readStateService.countUnread(currentUserId, chat.getId());
 
                 return ChatDTO.builder()
                                 .id(chat.getId())
@@ -270,12 +301,77 @@ public class ChatService {
                                 .createdBy(chat.getCreatedBy() != null ? chat.getCreatedBy().getUsername() : "system")
                                 .createdAt(chat.getCreatedAt())
                                 .participants(participants)
+                                .memberCount(participants.size())
                                 .lastMessage(lastMessage)
                                 .unreadCount(unreadCount)
                                 .isEncrypted(chat.getIsEncrypted())
                                 .build();
         }
 
+        private ChatDTO mapToDTO(ChatSummaryRepository.ChatListItem item, List<ChatParticipantDTO> participants,
+                        MessageDTO fallbackPreview, UUID currentUserId) {
+                MessageDTO lastMessage = fallbackPreview;
+                if (item.getLastMessageId() != null) {
+                        lastMessage = MessageDTO.builder()
+                                        .id(item.getLastMessageId())
+                                        .chatId(item.getChatId())
+                                        .seq(item.getLastMessageSeq())
+                                        .senderId(item.getLastSenderId().toString())
+                                        .senderUsername(item.getLastSenderUsername())
+                                        .messageType(item.getLastMessageType().name())
+                                        .encryptedContent(item.getLastEncryptedContent())
+                                        .encryptionIv(item.getLastEncryptionIv())
+                                        .createdAt(item.getLastMessageAt())
+                                        .build();
+                }
+
+                return ChatDTO.builder()
+                                .id(item.getChatId())
+                                .chatName(resolveDisplayName(item.getChatType(), item.getChatName(),
+                                                participants, currentUserId))
+                                .chatType(item.getChatType().name())
+                                .chatAvatar(item.getChatAvatar())
+                                .createdBy(item.getCreatedBy() != null ? item.getCreatedBy() : "system")
+                                .createdAt(item.getCreatedAt())
+                                .participants(participants)
+                                .memberCount(item.getMemberCount() != null ? item.getMemberCount() : participants.size())
+                                .lastMessage(lastMessage)
+                                .unreadCount(Math.max(0, item.getUnreadCount()))
+                                .isEncrypted(item.getIsEncrypted())
+                                .build();
+        }
+
+        private ChatParticipantDTO mapToParticipantDTO(UserChat uc) {
+                return ChatParticipantDTO.builder()
+                                .userId(uc.getUser().getId().toString())
+                                .username(uc.getUser().getUsername())
+                                .avatarUrl(uc.getUser().getAvatarUrl())
+                                .isAdmin(uc.getIsAdmin())
+                                .joinedAt(uc.getJoinedAt())
+                                .isOnline(uc.getUser().getIsOnline())
+                                .build();
+        }
+
+        // PERSONAL chats are shown under the other participant's name
+        private String resolveDisplayName(Chat.ChatType chatType, String chatName,
+                        List<ChatParticipantDTO> participants, UUID currentUserId) {
+                if (chatType != Chat.ChatType.PERSONAL) {
+                        return chatName;
+                }
+                return participants.stream()
+                                .filter(p -> !p.getUserId().equals(currentUserId.toString()))
+                                .map(ChatParticipantDTO::getUsername)
+                                .findFirst()
+                                .orElse(chatName);
+        }
+
+        private void onMembershipChanged(UUID chatId, List<String> formerMembers) {
+                chatAuthorizationService.evictChat(chatId);
+                userChatRepository.flush();
+                chatSummaryRepository.refreshMemberCount(chatId);
+                eventPublisher.publishEvent(new ChatEvents.MembershipChanged(chatId, formerMembers));
+        }
+
         @Transactional
         public ChatDTO joinChat(UUID chatId, String username) {
                 User user = userRepository.findByUsername(username)
@@ -298,51 +394,30 @@ public class ChatService {
                                 .isAdmin(false)
                                 .joinedAt(LocalDateTime.now())
                                 .build();
-                userChatRepository.save(membership);
+                userChatRepository.saveAndFlush(membership);
+                userChatRepository.markChatRead(user.getId(), chatId);
+                onMembershipChanged(chatId, List.of());
 
                 log.info("User {} joined chat {} via invite/QR", username, chatId);
                 return mapToDTO(chat, user.getId());
         }
 
-        private MessageDTO mapToMessageDTO(Message message) {
-                FileAttachmentDTO fileAttachmentDTO = null;
-                if (message.getFileAttachment() != null) {
-                        FileAttachment fa = message.getFileAttachment();
-                        fileAttachmentDTO = FileAttachmentDTO.builder()
-                                        .fileName(fa.getFileName())
-                                        .fileType(fa.getFileType())
-                                        .fileSize(fa.getFileSize())
-                                        .fileUrl(fa.getFileUrl())
-                                        .thumbnailUrl(fa.getThumbnailUrl())
-                                        .build();
-                }
-
-                VoiceMessageDTO voiceMessageDTO = null;
-                if (message.getMessageType() == Message.MessageType.VOICE) {
-                        Optional<VoiceMessage> voiceOpt = voiceMessageRepository.findByMessageId(message.getId());
-                        if (voiceOpt.isPresent()) {
-                                VoiceMessage vm = voiceOpt.get();
-                                voiceMessageDTO = VoiceMessageDTO.builder()
-                                                .audioUrl(vm.getAudioUrl())
-                                                .duration(vm.getDuration())
-                                                .fileSize(vm.getFileSize())
-                                                .mimeType(vm.getMimeType())
-                                                .waveform(vm.getWaveform())
-                                                .build();
-                        }
-                }
-
+        private MessageDTO mapToMessageDTO(MessageRepository.LastMessagePreview preview) {
                 return MessageDTO.builder()
-                                .id(message.getId())
-                                .chatId(message.getChat().getId())
-                                .senderId(message.getSender().getId().toString())
-                                .senderUsername(message.getSender().getUsername())
-                                .messageType(message.getMessageType().name())
-                                .encryptedContent(message.getEncryptedContent())
-                                .encryptionIv(message.getEncryptionIv())
-                                .createdAt(message.getCreatedAt())
-                                .fileAttachment(fileAttachmentDTO)
-                                .voiceMessage(voiceMessageDTO)
+                                .id(preview.getId())
+                                .chatId(preview.getChatId())
+                                .seq(preview.getSeq())
+                                .senderId(preview.getSenderId().toString())
+                                .senderUsername(preview.getSenderUsername())
+                                .messageType(preview.getMessageType())
+                                .encryptedContent(preview.getEncryptedContent())
+                                .encryptionIv(preview.getEncryptionIv())
+                                .createdAt(preview.getCreatedAt())
                                 .build();
         }
+
+        public enum ContactScope {
+                CO_MEMBERS, // Users sharing at least one chat
+                ALL         // Whole user directory, prefix required
+        }
 }
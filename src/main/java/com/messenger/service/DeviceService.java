@@ -23,7 +23,7 @@ public class DeviceService {
     private final UserRepository userRepository;
     private final ChatRepository chatRepository;
     private final UserChatRepository userChatRepository;
-    private final MessageRepository messageRepository;
+    private final MessageService messageService;
     private final QRCodeService qrCodeService;
 
     @Value("${app.server.url:http://localhost:8080}")
@@ -101,7 +101,7 @@ public class DeviceService {
                     .createdAt(LocalDateTime.now())
                     .build();
             
-            messageRepository.save(message);
+            messageService.saveMessage(message, user.getId(), username);
             
             log.info("Settings sent to favorites chat for user {}", username);
         } catch (Exception e) {
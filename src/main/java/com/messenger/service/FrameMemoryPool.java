@@ -0,0 +1,189 @@
+package com.messenger.service;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Пул off-heap памяти для видеофреймов.
+ *
+ * Блоки - direct-буферы размеров-степеней двойки от 1 KB до 1 MB; освобожденный
+ * блок возвращается в список свободных своего класса и переиспользуется, так что
+ * в установившемся режиме новые буферы не выделяются. Фреймы больше 1 MB получают
+ * отдельный direct-буфер без пула. Общий объем зарезервированной памяти (занятые и
+ * свободные блоки) ограничен бюджетом: если его не хватает, сначала отдаются
+ * свободные блоки других классов, а если и этого мало - {@link #allocate(int)}
+ * возвращает null и вызывающий код должен вытеснить старые фреймы.
+ *
+ * Каждый {@link Block} создается заново на каждое выделение и имеет счетчик ссылок:
+ * читатель, успевший вызвать {@link Block#retain()}, гарантированно дочитает данные
+ * до того, как буфер уйдет в пул. Устаревшая ссылка на освобожденный блок не может
+ * быть "воскрешена", поэтому переиспользование буфера не приводит к чтению чужих данных.
+ */
+public class FrameMemoryPool {
+
+    static final int MIN_CLASS_SHIFT = 10;  // 1 KB
+    static final int MAX_CLASS_SHIFT = 20;  // 1 MB
+
+    private final long budgetBytes;
+    private final List<ConcurrentLinkedQueue<ByteBuffer>> freeLists;  // по классу размера
+
+    private final AtomicLong reservedBytes = new AtomicLong();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final LongAdder failedAllocations = new LongAdder();
+
+    public FrameMemoryPool(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        List<ConcurrentLinkedQueue<ByteBuffer>> lists = new ArrayList<>();
+        for (int shift = MIN_CLASS_SHIFT; shift <= MAX_CLASS_SHIFT; shift++) {
+            lists.add(new ConcurrentLinkedQueue<>());
+        }
+        this.freeLists = List.copyOf(lists);
+    }
+
+    /**
+     * Выделяет блок для length байт.
+     *
+     * @return блок со счетчиком ссылок 1, или null если бюджет исчерпан
+     */
+    public Block allocate(int length) {
+        int sizeClass = sizeClass(length);
+        ByteBuffer buffer = sizeClass >= 0 ? freeLists.get(sizeClass).poll() : null;
+        if (buffer == null) {
+            int capacity = sizeClass >= 0 ? 1 << (sizeClass + MIN_CLASS_SHIFT) : length;
+            if (!reserve(capacity)) {
+                failedAllocations.increment();
+                return null;
+            }
+            buffer = ByteBuffer.allocateDirect(capacity);
+        }
+        usedBytes.addAndGet(length);
+        return new Block(this, buffer, sizeClass, length);
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    /**
+     * Память direct-буферов пула: занятые и свободные блоки.
+     */
+    public long getReservedBytes() {
+        return reservedBytes.get();
+    }
+
+    /**
+     * Байты, занятые живыми фреймами.
+     */
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    public long getFailedAllocations() {
+        return failedAllocations.sum();
+    }
+
+    private boolean reserve(long bytes) {
+        if (tryReserve(bytes)) {
+            return true;
+        }
+        // Не хватает бюджета: отдаем свободные блоки (их память освободит GC)
+        for (int i = freeLists.size() - 1; i >= 0; i--) {
+            ByteBuffer free;
+            while ((free = freeLists.get(i).poll()) != null) {
+                reservedBytes.addAndGet(-free.capacity());
+                if (tryReserve(bytes)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean tryReserve(long bytes) {
+        while (true) {
+            long current = reservedBytes.get();
+            if (current + bytes > budgetBytes) {
+                return false;
+            }
+            if (reservedBytes.compareAndSet(current, current + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    private void recycle(Block block) {
+        usedBytes.addAndGet(-block.length);
+        if (block.sizeClass < 0) {
+            // Непуловый буфер освободит GC вместе с объектом
+            reservedBytes.addAndGet(-block.buffer.capacity());
+        } else {
+            freeLists.get(block.sizeClass).offer(block.buffer);
+        }
+    }
+
+    static int sizeClass(int length) {
+        int shift = Math.max(MIN_CLASS_SHIFT, 32 - Integer.numberOfLeadingZeros(Math.max(1, length) - 1));
+        return shift > MAX_CLASS_SHIFT ? -1 : shift - MIN_CLASS_SHIFT;
+    }
+
+    /**
+     * Данные одного фрейма в off-heap памяти.
+     */
+    public static final class Block {
+        private final FrameMemoryPool pool;
+        private final ByteBuffer buffer;
+        private final int sizeClass;
+        private final int length;
+        private final AtomicInteger refCount = new AtomicInteger(1);
+
+        private Block(FrameMemoryPool pool, ByteBuffer buffer, int sizeClass, int length) {
+            this.pool = pool;
+            this.buffer = buffer;
+            this.sizeClass = sizeClass;
+            this.length = length;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * Записывает данные фрейма; вызывается владельцем до публикации блока.
+         */
+        public void write(ByteBuffer source) {
+            buffer.duplicate().clear().put(source.duplicate());
+        }
+
+        public byte[] toByteArray() {
+            byte[] bytes = new byte[length];
+            buffer.duplicate().clear().get(bytes);
+            return bytes;
+        }
+
+        /**
+         * @return false, если блок уже освобожден
+         */
+        public boolean retain() {
+            while (true) {
+                int count = refCount.get();
+                if (count <= 0) {
+                    return false;
+                }
+                if (refCount.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        public void release() {
+            if (refCount.decrementAndGet() == 0) {
+                pool.recycle(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.messenger.service;
+
+import com.messenger.dto.MediaFrame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Определяет ключевые кадры по заголовкам закодированного фрейма.
+ *
+ * Клиенты не всегда выставляют флаг ключевого кадра (JSON-канал передает только
+ * кодек), поэтому буфер смотрит в сам фрейм:
+ * <ul>
+ *   <li>VP8 - бит типа кадра в frame tag и стартовый код 9d 01 2a (RFC 6386, 9.1);</li>
+ *   <li>VP9 - frame_type в несжатом заголовке;</li>
+ *   <li>H264 - NAL unit типа 5 (IDR), Annex B или с 4-байтовыми длинами (avc);</li>
+ *   <li>AV1 - OBU заголовка последовательности, кодеры шлют его с каждым ключевым кадром.</li>
+ * </ul>
+ * Для неизвестного кодека или нераспознанного фрейма возвращается false.
+ */
+public final class KeyframeDetector {
+
+    private static final int H264_NAL_IDR = 5;
+    private static final int AV1_OBU_SEQUENCE_HEADER = 1;
+    private static final int MAX_UNITS = 64;  // хватает с запасом: SPS, PPS, SEI, слайсы
+
+    private KeyframeDetector() {
+    }
+
+    /**
+     * @param payload фрейм (оставшиеся байты); позиция буфера не меняется
+     */
+    public static boolean isKeyframe(MediaFrame.Codec codec, ByteBuffer payload) {
+        if (codec == null || !payload.hasRemaining()) {
+            return false;
+        }
+        ByteBuffer in = payload.slice();
+        return switch (codec) {
+            case VP8 -> isVp8Keyframe(in);
+            case VP9 -> isVp9Keyframe(in);
+            case H264 -> isH264Keyframe(in);
+            case AV1 -> isAv1Keyframe(in);
+            default -> false;
+        };
+    }
+
+    private static boolean isVp8Keyframe(ByteBuffer in) {
+        return in.remaining() >= 10
+                && (in.get(0) & 0x01) == 0
+                && (in.get(3) & 0xFF) == 0x9d
+                && (in.get(4) & 0xFF) == 0x01
+                && (in.get(5) & 0xFF) == 0x2a;
+    }
+
+    private static boolean isVp9Keyframe(ByteBuffer in) {
+        int header = in.get(0) & 0xFF;
+        if ((header >> 6) != 0b10) {  // frame_marker
+            return false;
+        }
+        int profile = ((header >> 5) & 1) | (((header >> 4) & 1) << 1);
+        int bit = 3;  // следующий бит после профиля, считая от старшего
+        if (profile == 3) {
+            bit--;    // reserved_zero
+        }
+        boolean showExistingFrame = ((header >> bit) & 1) != 0;
+        boolean interFrame = ((header >> (bit - 1)) & 1) != 0;
+        return !showExistingFrame && !interFrame;
+    }
+
+    private static boolean isH264Keyframe(ByteBuffer in) {
+        if (startCodeLength(in, 0) > 0) {
+            // Annex B: NAL units разделены стартовыми кодами 00 00 01 / 00 00 00 01
+            int units = 0;
+            for (int i = 0; i + 3 < in.limit() && units < MAX_UNITS; i++) {
+                int startCode = startCodeLength(in, i);
+                if (startCode > 0) {
+                    units++;
+                    if ((in.get(i + startCode) & 0x1F) == H264_NAL_IDR) {
+                        return true;
+                    }
+                    i += startCode;
+                }
+            }
+            return false;
+        }
+        // avc: каждому NAL unit предшествует его длина (4 байта)
+        int position = 0;
+        for (int units = 0; position + 4 < in.limit() && units < MAX_UNITS; units++) {
+            int length = in.getInt(position);
+            if (length <= 0 || length > in.limit() - position - 4) {
+                return false;
+            }
+            if ((in.get(position + 4) & 0x1F) == H264_NAL_IDR) {
+                return true;
+            }
+            position += 4 + length;
+        }
+        return false;
+    }
+
+    private static int startCodeLength(ByteBuffer in, int i) {
+        if (i + 3 < in.limit() && in.get(i) == 0 && in.get(i + 1) == 0) {
+            if (in.get(i + 2) == 1) {
+                return 3;
+            }
+            if (i + 4 < in.limit() && in.get(i + 2) == 0 && in.get(i + 3) == 1) {
+                return 4;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isAv1Keyframe(ByteBuffer in) {
+        int position = 0;
+        for (int units = 0; position < in.limit() && units < MAX_UNITS; units++) {
+            int header = in.get(position) & 0xFF;
+            int type = (header >> 3) & 0x0F;
+            if (type == AV1_OBU_SEQUENCE_HEADER) {
+                return true;
+            }
+            boolean extension = (header & 0x04) != 0;
+            boolean hasSize = (header & 0x02) != 0;
+            if (!hasSize) {
+                return false;  // последний OBU занимает остаток фрейма
+            }
+            position += extension ? 2 : 1;
+            // obu_size в leb128
+            long size = 0;
+            for (int shift = 0; ; shift += 7) {
+                if (position >= in.limit() || shift > 28) {
+                    return false;
+                }
+                int b = in.get(position++) & 0xFF;
+                size |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+            }
+            if (size > in.limit() - position) {
+                return false;
+            }
+            position += (int) size;
+        }
+        return false;
+    }
+}
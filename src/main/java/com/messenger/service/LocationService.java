@@ -7,7 +7,6 @@ import com.messenger.entity.Chat;
 import com.messenger.entity.User;
 import com.messenger.entity.Message.MessageType;
 import com.messenger.repository.ChatRepository;
-import com.messenger.repository.MessageRepository;
 import com.messenger.repository.UserRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -22,7 +21,7 @@ import java.util.UUID;
 @Slf4j
 @Service
 public class LocationService {
-    @Autowired private MessageRepository messageRepository;
+    @Autowired private MessageService messageService;
     @Autowired private ChatRepository chatRepository;
     @Autowired private UserRepository userRepository;
 
@@ -46,7 +45,7 @@ public class LocationService {
             .createdAt(LocalDateTime.now())
             .build();
 
-        messageRepository.save(msg);
+        msg = messageService.saveMessage(msg, user.getId(), username);
 
         log.info("Location message created: {} in chat {} by {}", msg.getId(), chatId, username);
         return LocationShareResponse.builder()
@@ -2,24 +2,36 @@ package com.messenger.service;
 
 import com.messenger.dto.*;
 import com.messenger.entity.*;
+import com.messenger.event.ChatEvents;
 import com.messenger.repository.*;
+import io.micrometer.core.annotation.Timed;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -32,32 +44,41 @@ public class MessageService {
     private final ChatRepository chatRepository;
     private final UserRepository userRepository;
     private final UserChatRepository userChatRepository;
-    private final MessageStatusRepository messageStatusRepository;
     private final VoiceMessageRepository voiceMessageRepository;
     private final RabbitTemplate rabbitTemplate;
     private final SimpMessagingTemplate messagingTemplate;
     private final FileStorageService fileStorageService;
+    private final ReadStateService readStateService;
+    private final ChatSummaryRepository chatSummaryRepository;
+    private final MessageReactionRepository reactionRepository;
+    private final ChatAuthorizationService chatAuthorizationService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private static final int MAX_BATCH_SIZE = 500;
+    private static final int MAX_SYNC_CHATS = 200;
+    private static final int DEFAULT_SYNC_LIMIT = 100;
+    // Greatest UUID: a changed-since cursor without an id skips rows stamped at its time
+    private static final UUID MAX_ID = new UUID(-1L, -1L);
 
     @Value("${rabbitmq.exchange:messenger.exchange}")
     private String exchange;
 
-    @Transactional
-    public MessageDTO sendMessage(SendMessageRequest request, String username) {
-        User sender = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        Chat chat = chatRepository.findById(request.getChatId())
-                .orElseThrow(() -> new RuntimeException("Chat not found"));
+    // Changes stamped before the watermark may still commit after it (open transactions, clock skew)
+    @Value("${sync.change-overlap:30s}")
+    private Duration changeOverlap;
 
-        // Check if user is member of chat
-        boolean isMember = userChatRepository.existsByUserIdAndChatId(sender.getId(), chat.getId());
-        if (!isMember) {
-            throw new RuntimeException("User is not a member of this chat");
-        }
+    @Transactional
+    @Timed(value = "messenger.message.send", histogram = true,
+            description = "Time to persist and fan out a chat message")
+    public MessageDTO sendMessage(SendMessageRequest request, UUID senderId, String username) {
+        // Membership implies both rows exist, so references are enough here
+        chatAuthorizationService.requireMember(senderId, request.getChatId());
+        User sender = userRepository.getReferenceById(senderId);
+        Chat chat = chatRepository.getReferenceById(request.getChatId());
 
         // Check for idempotency if clientMessageId is provided
         if (request.getClientMessageId() != null) {
-            Optional<Message> existing = messageRepository.findBySenderIdAndClientMessageId(sender.getId(),
+            Optional<Message> existing = messageRepository.findBySenderIdAndClientMessageId(senderId,
                     request.getClientMessageId());
             if (existing.isPresent()) {
                 log.info("Duplicate message detected for clientMessageId: {}. Returning existing message.",
@@ -86,7 +107,8 @@ public class MessageService {
             message.setReplyToMessage(replyTo);
         }
 
-        // Save message first to get its ID
+        // Saved with a placeholder sequence number, the real one is allocated at the end
+        message.setSeq(messageRepository.reserveSeqPlaceholder());
         message = messageRepository.save(message);
 
         // Handle file attachment
@@ -110,7 +132,7 @@ public class MessageService {
             VoiceMessage voice = VoiceMessage.builder()
                     .messageId(message.getId()) // Use the generated UUID
                     .chatId(chat.getId())
-                    .senderId(sender.getId())
+                    .senderId(senderId)
                     .audioUrl(voiceDto.getAudioUrl())
                     .duration(voiceDto.getDuration())
                     .fileSize(voiceDto.getFileSize())
@@ -120,39 +142,64 @@ public class MessageService {
             voiceMessageRepository.save(voice);
         }
 
-        // Create message statuses for all chat members
-        List<UserChat> members = userChatRepository.findByChatId(chat.getId());
-        for (UserChat member : members) {
-            MessageStatus status = MessageStatus.builder()
-                    .message(message)
-                    .user(member.getUser())
-                    .status(member.getUser().getId().equals(sender.getId())
-                            ? MessageStatus.MessageDeliveryStatus.READ
-                            : MessageStatus.MessageDeliveryStatus.SENT)
-                    .build();
-            messageStatusRepository.save(status);
-        }
-
-        // Send to RabbitMQ for async processing (notifications, etc.)
-        rabbitTemplate.convertAndSend(exchange, "message.sent",
-                new MessageEventDTO(message.getId(), chat.getId(), sender.getUsername()));
+        completeSend(message, senderId, username);
 
         log.info("Message sent: {} by {} to chat {}", message.getId(), username, chat.getId());
 
         return mapToDTO(message);
     }
 
-    @Transactional(readOnly = true)
-    public List<MessageDTO> getChatMessages(UUID chatId, String username, int page, int size) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    /**
+     * Stores a message built by another service (location share, settings sent to the
+     * favorites chat) through the same steps as {@link #sendMessage}: read state,
+     * sequence number, chat summary and the MessageSent event. Membership is the
+     * caller's concern.
+     */
+    @Transactional
+    public Message saveMessage(Message message, UUID senderId, String senderUsername) {
+        message.setSeq(messageRepository.reserveSeqPlaceholder());
+        Message saved = messageRepository.save(message);
+        completeSend(saved, senderId, senderUsername);
+        return saved;
+    }
+
+    private void completeSend(Message message, UUID senderId, String senderUsername) {
+        // Per-recipient statuses; the message row has to be flushed first for the foreign key
+        messageRepository.flush();
+        readStateService.onMessageSent(message, senderId);
+
+        // The sequence number comes last: allocating it locks this chat's row until
+        // commit (so numbers become visible in order and "after seq N" sync never
+        // skips one), and other senders to the chat wait only for the statements below
+        UUID chatId = message.getChat().getId();
+        long seq = chatRepository.allocateMessageSeq(chatId);
+        messageRepository.assignSeq(message.getId(), seq);
+        message.setSeq(seq);
+        readStateService.onMessageSequenced(message, senderId);
+        updateChatSummary(message, senderId, senderUsername);
+        eventPublisher.publishEvent(new ChatEvents.MessageSent(chatId, message.getId(), senderUsername));
+    }
 
-        // Check membership
-        if (!userChatRepository.existsByUserIdAndChatId(user.getId(), chatId)) {
-            throw new RuntimeException("User is not a member of this chat");
+    /**
+     * Hands the message to RabbitMQ for async processing (notifications, etc.) once it
+     * is committed: consumers can load it, and the broker round trip is not made while
+     * the chat row is locked. A failed publish no longer rolls the message back.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void publishMessageSent(ChatEvents.MessageSent event) {
+        try {
+            rabbitTemplate.convertAndSend(exchange, "message.sent",
+                    new MessageEventDTO(event.getMessageId(), event.getChatId(), event.getSenderUsername()));
+        } catch (AmqpException e) {
+            log.error("Failed to publish message.sent for {}: {}", event.getMessageId(), e.getMessage());
         }
+    }
+
+    @Transactional(readOnly = true)
+    public List<MessageDTO> getChatMessages(UUID chatId, String username, int page, int size) {
+        chatAuthorizationService.requireMember(username, chatId);
 
-        Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
+        Pageable pageable = PageRequest.of(page, size, Sort.by("seq").descending());
         Page<Message> messages = messageRepository.findByChatIdAndIsDeletedFalse(chatId, pageable);
 
         return messages.getContent().stream()
@@ -160,33 +207,184 @@ public class MessageService {
                 .collect(Collectors.toList());
     }
 
-    @Transactional
-    public void markMessagesAsRead(UUID chatId, String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    /**
+     * Returns one page of history older than {@code beforeSeq} (or the newest page when
+     * it is null), seeking on the (chat_id, seq) index instead of using OFFSET, so the
+     * cost is the same at any scroll depth and no count query is issued.
+     */
+    @Transactional(readOnly = true)
+    public MessageSliceDTO getChatHistory(UUID chatId, String username, Long beforeSeq, int size) {
+        chatAuthorizationService.requireMember(username, chatId);
+
+        int pageSize = Math.min(Math.max(size, 1), MAX_BATCH_SIZE);
+        Slice<Message> slice = messageRepository.findByChatIdAndIsDeletedFalseAndSeqLessThan(chatId,
+                beforeSeq != null ? beforeSeq : Long.MAX_VALUE,
+                PageRequest.of(0, pageSize, Sort.by("seq").descending()));
+
+        List<MessageDTO> messages = slice.getContent().stream()
+                .map(this::mapToDTO)
+                .collect(Collectors.toList());
+
+        return MessageSliceDTO.builder()
+                .messages(messages)
+                .nextCursor(slice.hasNext() && !messages.isEmpty()
+                        ? messages.get(messages.size() - 1).getSeq()
+                        : null)
+                .hasMore(slice.hasNext())
+                .build();
+    }
+
+    /**
+     * Returns messages with a sequence number greater than {@code afterSeq}, oldest first.
+     * Deleted messages are included (flagged) so clients can drop them locally.
+     */
+    @Transactional(readOnly = true)
+    public List<MessageDTO> getMessagesAfter(UUID chatId, String username, long afterSeq, int limit) {
+        chatAuthorizationService.requireMember(username, chatId);
+
+        int batchSize = Math.min(Math.max(limit, 1), MAX_BATCH_SIZE);
+        return messageRepository.findByChatIdAndSeqGreaterThanOrderBySeqAsc(chatId, afterSeq,
+                        PageRequest.of(0, batchSize))
+                .stream()
+                .map(this::mapToDTO)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Delta sync for several chats in one request. For every cursor returns messages
+     * with seq above {@code afterSeq} and already delivered messages changed after
+     * {@code changedSince}. The whole response carries at most MAX_BATCH_SIZE messages;
+     * chats that did not fit are flagged with hasMore and can be fetched again with
+     * the returned cursors.
+     */
+    @Transactional(readOnly = true)
+    public SyncDTOs.SyncResponse syncChats(SyncDTOs.SyncRequest request, String username) {
+        UUID userId = chatAuthorizationService.resolveUserId(username);
+
+        List<SyncDTOs.ChatCursor> cursors = request.getChats();
+        if (cursors.size() > MAX_SYNC_CHATS) {
+            throw new RuntimeException("Too many chats in sync request (max " + MAX_SYNC_CHATS + ")");
+        }
+
+        Set<UUID> memberChatIds = userChatRepository.findChatIdsByUserIdAndChatIdIn(userId,
+                cursors.stream().map(SyncDTOs.ChatCursor::getChatId).collect(Collectors.toList()));
+
+        // Database clock, the one updatedAt is stamped with; taken before reading
+        LocalDateTime serverTime = messageRepository.currentDatabaseTime().toLocalDateTime();
+        int limit = Math.min(Math.max(request.getLimit() != null ? request.getLimit() : DEFAULT_SYNC_LIMIT, 1),
+                MAX_BATCH_SIZE);
+        int budget = MAX_BATCH_SIZE;
+
+        List<SyncDTOs.ChatDelta> deltas = new ArrayList<>();
+        List<String> returnedIds = new ArrayList<>();
+        boolean hasMore = false;
+
+        for (SyncDTOs.ChatCursor cursor : cursors) {
+            if (!memberChatIds.contains(cursor.getChatId())) {
+                throw new RuntimeException("User is not a member of this chat");
+            }
+
+            SyncDTOs.ChatDelta delta = syncChat(cursor, Math.min(limit, budget), serverTime.minus(changeOverlap));
+            budget -= delta.getMessages().size() + delta.getChanged().size();
+            hasMore |= delta.isHasMore();
+            deltas.add(delta);
+
+            delta.getMessages().forEach(m -> returnedIds.add(m.getId().toString()));
+            delta.getChanged().forEach(m -> returnedIds.add(m.getId().toString()));
+        }
+
+        return SyncDTOs.SyncResponse.builder()
+                .chats(deltas)
+                .reactions(countReactions(returnedIds))
+                .serverTime(serverTime)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    /**
+     * @param watermark database time minus the overlap: a change stamped earlier may
+     *                  still be uncommitted, so the next sync starts from here and may
+     *                  return some changes twice instead of missing them
+     */
+    private SyncDTOs.ChatDelta syncChat(SyncDTOs.ChatCursor cursor, int limit, LocalDateTime watermark) {
+        long afterSeq = cursor.getAfterSeq() != null ? cursor.getAfterSeq() : 0L;
+        LocalDateTime changedSince = cursor.getChangedSince();
+        UUID changedAfterId = cursor.getChangedAfterId();
+
+        if (limit <= 0) {
+            // Response budget is used up, client asks again with the same cursor
+            return SyncDTOs.ChatDelta.builder()
+                    .chatId(cursor.getChatId())
+                    .messages(List.of())
+                    .changed(List.of())
+                    .nextAfterSeq(afterSeq)
+                    .nextChangedSince(changedSince)
+                    .nextChangedAfterId(changedAfterId)
+                    .hasMore(true)
+                    .build();
+        }
 
-        List<MessageStatus> unreadStatuses = messageStatusRepository
-                .findByUserIdAndMessageChatIdAndStatusNot(user.getId(), chatId,
-                        MessageStatus.MessageDeliveryStatus.READ);
+        // One extra row tells whether anything is left without a count query
+        List<Message> fresh = messageRepository.findByChatIdAndSeqGreaterThanOrderBySeqAsc(
+                cursor.getChatId(), afterSeq, PageRequest.of(0, limit + 1));
+        boolean moreFresh = fresh.size() > limit;
+        if (moreFresh) {
+            fresh = fresh.subList(0, limit);
+        }
 
-        for (MessageStatus status : unreadStatuses) {
-            status.setStatus(MessageStatus.MessageDeliveryStatus.READ);
-            status.setUpdatedAt(LocalDateTime.now());
-            messageStatusRepository.save(status);
+        List<Message> changed = List.of();
+        boolean moreChanged = false;
+        int changedLimit = limit - fresh.size();
+        if (changedSince != null && changedLimit > 0) {
+            changed = messageRepository.findChangedSince(cursor.getChatId(), afterSeq, changedSince,
+                    changedAfterId != null ? changedAfterId : MAX_ID,
+                    PageRequest.of(0, changedLimit + 1));
+            moreChanged = changed.size() > changedLimit;
+            if (moreChanged) {
+                changed = changed.subList(0, changedLimit);
+            }
+        } else if (changedSince != null) {
+            moreChanged = true;
         }
 
-        // Update last read message in UserChat
-        userChatRepository.findByUserIdAndChatId(user.getId(), chatId)
-                .ifPresent(userChat -> {
-                    if (!unreadStatuses.isEmpty()) {
-                        userChat.setLastReadMessageId(
-                                unreadStatuses.get(unreadStatuses.size() - 1).getMessage().getId());
-                        userChatRepository.save(userChat);
-                    }
-                });
+        LocalDateTime nextChangedSince = watermark;
+        UUID nextChangedAfterId = null;
+        if (moreChanged) {
+            // Continue right after the last returned row; rows sharing its timestamp are not skipped
+            Message last = changed.isEmpty() ? null : changed.get(changed.size() - 1);
+            nextChangedSince = last != null ? last.getUpdatedAt() : changedSince;
+            nextChangedAfterId = last != null ? last.getId() : changedAfterId;
+        }
 
-        log.info("Marked {} messages as read for user {} in chat {}",
-                unreadStatuses.size(), username, chatId);
+        return SyncDTOs.ChatDelta.builder()
+                .chatId(cursor.getChatId())
+                .messages(fresh.stream().map(this::mapToDTO).collect(Collectors.toList()))
+                .changed(changed.stream().map(this::mapToDTO).collect(Collectors.toList()))
+                .nextAfterSeq(fresh.isEmpty() ? afterSeq : fresh.get(fresh.size() - 1).getSeq())
+                .nextChangedSince(nextChangedSince)
+                .nextChangedAfterId(nextChangedAfterId)
+                .hasMore(moreFresh || moreChanged)
+                .build();
+    }
+
+    private Map<UUID, Map<String, Long>> countReactions(List<String> messageIds) {
+        Map<UUID, Map<String, Long>> reactions = new HashMap<>();
+        if (messageIds.isEmpty()) {
+            return reactions;
+        }
+        for (Object[] row : reactionRepository.countByMessageIdInGroupedByEmoji(messageIds)) {
+            reactions.computeIfAbsent(UUID.fromString((String) row[0]), id -> new HashMap<>())
+                    .put((String) row[1], (Long) row[2]);
+        }
+        return reactions;
+    }
+
+    @Transactional
+    public void markMessagesAsRead(UUID chatId, UUID userId, String username) {
+        int updated = readStateService.markChatRead(userId, chatId);
+        eventPublisher.publishEvent(new ChatEvents.ChatRead(chatId, username));
+
+        log.info("Marked chat {} as read for user {} ({} rows updated)", chatId, username, updated);
     }
 
     @Transactional
@@ -200,10 +398,26 @@ public class MessageService {
         });
     }
 
+    private void updateChatSummary(Message message, UUID senderId, String senderUsername) {
+        UUID chatId = message.getChat().getId();
+        if (updateLastMessage(chatId, message, senderId, senderUsername) == 0) {
+            // No summary row yet (chat created before summaries existed)
+            chatSummaryRepository.refreshMemberCount(chatId);
+            updateLastMessage(chatId, message, senderId, senderUsername);
+        }
+    }
+
+    private int updateLastMessage(UUID chatId, Message message, UUID senderId, String senderUsername) {
+        return chatSummaryRepository.updateLastMessage(chatId, message.getId(), message.getSeq(),
+                senderId, senderUsername, message.getMessageType(),
+                message.getEncryptedContent(), message.getEncryptionIv(), message.getCreatedAt());
+    }
+
     private MessageDTO mapToDTO(Message message) {
         MessageDTO.MessageDTOBuilder builder = MessageDTO.builder()
                 .id(message.getId())
                 .chatId(message.getChat().getId())
+                .seq(message.getSeq())
                 .senderId(message.getSender().getId().toString())
                 .senderUsername(message.getSender().getUsername())
                 .messageType(message.getMessageType().name())
@@ -211,6 +425,7 @@ public class MessageService {
                 .encryptionIv(message.getEncryptionIv())
                 .createdAt(message.getCreatedAt())
                 .isEdited(message.getIsEdited())
+                .isDeleted(message.getIsDeleted())
                 .replyToMessageId(message.getReplyToMessage() != null
                         ? message.getReplyToMessage().getId()
                         : null);
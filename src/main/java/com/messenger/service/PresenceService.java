@@ -0,0 +1,46 @@
+package com.messenger.service;
+
+import com.messenger.dto.ChatDTOs.ChatDTO;
+import com.messenger.dto.ChatDTOs.ChatParticipantDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Online presence of users, taken from connected STOMP sessions.
+ *
+ * Chat DTOs are cached for up to an hour and online status changes publish no
+ * invalidation, so presence is overlaid on every read instead of being served from
+ * the cache. In RELAY mode the user registry is broadcast between nodes, so users
+ * connected to another node count as online too.
+ */
+@Service
+@RequiredArgsConstructor
+public class PresenceService {
+
+    private final SimpUserRegistry simpUserRegistry;
+
+    public boolean isOnline(String username) {
+        return simpUserRegistry.getUser(username) != null;
+    }
+
+    /**
+     * Sets current presence on the participants. The DTOs must be the caller's own
+     * copies, as returned by the cache.
+     */
+    public ChatDTO withPresence(ChatDTO chat) {
+        if (chat != null && chat.getParticipants() != null) {
+            for (ChatParticipantDTO participant : chat.getParticipants()) {
+                participant.setIsOnline(isOnline(participant.getUsername()));
+            }
+        }
+        return chat;
+    }
+
+    public List<ChatDTO> withPresence(List<ChatDTO> chats) {
+        chats.forEach(this::withPresence);
+        return chats;
+    }
+}
@@ -4,11 +4,9 @@ import com.messenger.dto.ReactionDTOs.*;
 import com.messenger.entity.Emoji;
 import com.messenger.entity.Message;
 import com.messenger.entity.MessageReaction;
-import com.messenger.entity.User;
 import com.messenger.repository.EmojiRepository;
 import com.messenger.repository.MessageReactionRepository;
 import com.messenger.repository.MessageRepository;
-import com.messenger.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -24,21 +22,20 @@ public class ReactionService {
 
     private final MessageReactionRepository reactionRepository;
     private final MessageRepository messageRepository;
-    private final UserRepository userRepository;
     private final EmojiRepository emojiRepository;
+    private final ChatAuthorizationService chatAuthorizationService;
 
     @Transactional
     public ReactionDTO addReaction(AddReactionRequest request, String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
         Message message = messageRepository.findById(request.getMessageId())
                 .orElseThrow(() -> new RuntimeException("Message not found"));
 
+        UUID userId = chatAuthorizationService.requireMember(username, message.getChat().getId());
+
         // Проверяем, существует ли уже такая реакция
         Optional<MessageReaction> existingReaction = reactionRepository
                 .findByMessageIdAndUserIdAndEmojiCode(
-                        request.getMessageId().toString(), user.getId().toString(), request.getEmojiCode());
+                        request.getMessageId().toString(), userId.toString(), request.getEmojiCode());
 
         if (existingReaction.isPresent()) {
             log.info("User {} already reacted with {} to message {}",
@@ -51,12 +48,14 @@ public class ReactionService {
 
         MessageReaction reaction = MessageReaction.builder()
                 .messageId(request.getMessageId().toString())
-                .userId(user.getId().toString())
+                .userId(userId.toString())
                 .emojiCode(request.getEmojiCode())
                 .timestamp(java.time.Instant.now())
                 .build();
 
         reactionRepository.save(reaction);
+        // Чтобы изменение попало в delta sync
+        messageRepository.touch(message.getId());
 
         log.info("User {} added reaction {} to message {}",
                 username, request.getEmojiCode(), request.getMessageId());
@@ -66,11 +65,13 @@ public class ReactionService {
 
     @Transactional
     public void removeReaction(RemoveReactionRequest request, String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        UUID userId = chatAuthorizationService.resolveUserId(username);
 
-        reactionRepository.deleteByMessageIdAndUserIdAndEmojiCode(
-                request.getMessageId().toString(), user.getId().toString(), request.getEmojiCode());
+        long removed = reactionRepository.deleteByMessageIdAndUserIdAndEmojiCode(
+                request.getMessageId().toString(), userId.toString(), request.getEmojiCode());
+        if (removed > 0) {
+            messageRepository.touch(request.getMessageId());
+        }
 
         log.info("User {} removed reaction {} from message {}",
                 username, request.getEmojiCode(), request.getMessageId());
@@ -88,7 +89,7 @@ public class ReactionService {
     public MessageReactionsDTO getMessageReactionsSummary(UUID messageId, String username) {
         List<MessageReaction> reactions = reactionRepository.findByMessageId(messageId.toString());
 
-        User user = userRepository.findByUsername(username).orElse(null);
+        UUID userId = chatAuthorizationService.findUserId(username).orElse(null);
 
         // Подсчет реакций по типам
         Map<String, Long> counts = reactions.stream()
@@ -109,9 +110,9 @@ public class ReactionService {
         boolean userHasReacted = false;
         String userReaction = null;
 
-        if (user != null) {
+        if (userId != null) {
             for (MessageReaction reaction : reactions) {
-                if (reaction.getUserId().equals(user.getId().toString())) {
+                if (reaction.getUserId().equals(userId.toString())) {
                     userHasReacted = true;
                     userReaction = reaction.getEmojiCode();
                     break;
@@ -129,12 +130,11 @@ public class ReactionService {
 
     @Transactional
     public void toggleReaction(AddReactionRequest request, String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        UUID userId = chatAuthorizationService.resolveUserId(username);
 
         Optional<MessageReaction> existing = reactionRepository
                 .findByMessageIdAndUserIdAndEmojiCode(
-                        request.getMessageId().toString(), user.getId().toString(), request.getEmojiCode());
+                        request.getMessageId().toString(), userId.toString(), request.getEmojiCode());
 
         if (existing.isPresent()) {
             removeReaction(RemoveReactionRequest.builder()
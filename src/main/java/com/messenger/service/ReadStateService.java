@@ -0,0 +1,95 @@
+package com.messenger.service;
+
+import com.messenger.entity.Message;
+import com.messenger.entity.MessageStatus;
+import com.messenger.repository.MessageStatusRepository;
+import com.messenger.repository.UserChatRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Keeps track of which messages each chat member has read.
+ *
+ * In {@link ReadReceiptMode#STATUS} mode every message gets one MessageStatus row
+ * per chat member. In {@link ReadReceiptMode#WATERMARK} mode no per-message rows are
+ * written: each membership keeps the sequence number of the last read message
+ * (UserChat.lastReadSeq), marking a chat as read is a single UPDATE and the unread
+ * count is the distance between the chat head and the watermark.
+ *
+ * The watermark is maintained in both modes so it can always be used for reads.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReadStateService {
+
+    private final MessageStatusRepository messageStatusRepository;
+    private final UserChatRepository userChatRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${chat.read-receipts.mode:STATUS}")
+    private ReadReceiptMode mode;
+
+    /**
+     * Creates per-recipient statuses for a freshly persisted message. Needs only the
+     * message row, not its sequence number, so it runs before the number is allocated.
+     */
+    @Transactional
+    public void onMessageSent(Message message, UUID senderId) {
+        if (mode == ReadReceiptMode.STATUS) {
+            int recipients = messageStatusRepository.insertForChatMembers(message.getId(),
+                    message.getChat().getId(), senderId);
+            meterRegistry.summary("messenger.message.fanout.recipients").record(recipients);
+        }
+    }
+
+    /**
+     * Sending a message implies the sender has seen everything before it.
+     */
+    @Transactional
+    public void onMessageSequenced(Message message, UUID senderId) {
+        userChatRepository.advanceReadSeq(senderId, message.getChat().getId(), message.getSeq());
+    }
+
+    /**
+     * Marks all messages in the chat as read for the user.
+     *
+     * @return number of rows changed
+     */
+    @Transactional
+    public int markChatRead(UUID userId, UUID chatId) {
+        int updated = 0;
+        if (mode == ReadReceiptMode.STATUS) {
+            updated = messageStatusRepository.updateStatusByUserIdAndChatId(userId, chatId,
+                    MessageStatus.MessageDeliveryStatus.READ, LocalDateTime.now());
+        }
+        updated += userChatRepository.markChatRead(userId, chatId);
+        return updated;
+    }
+
+    @Transactional(readOnly = true)
+    public long countUnread(UUID userId, UUID chatId) {
+        if (mode == ReadReceiptMode.STATUS) {
+            return messageStatusRepository.countUnreadByUserIdAndChatId(userId, chatId);
+        }
+        return userChatRepository.countUnreadByWatermark(userId, chatId)
+                .map(count -> Math.max(0, count))
+                .orElse(0L);
+    }
+
+    public ReadReceiptMode getMode() {
+        return mode;
+    }
+
+    public enum ReadReceiptMode {
+        STATUS,     // One MessageStatus row per message and member
+        WATERMARK   // UserChat.lastReadSeq only
+    }
+}
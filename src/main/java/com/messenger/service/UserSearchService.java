@@ -0,0 +1,148 @@
+package com.messenger.service;
+
+import com.messenger.dto.ChatDTOs.ContactDTO;
+import com.messenger.event.UserEvents;
+import com.messenger.repository.UserRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Username autocomplete (e.g. for @mentions) served from an in-memory {@link UsernameIndex}.
+ *
+ * The index is loaded in the background once the application is ready and kept
+ * up to date from registration events. A registration is also published on a Redis
+ * channel, so users registered through another node are found here as well. Until
+ * the index is loaded, or if it hit its size cap, queries go to the database prefix
+ * search instead.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UserSearchService {
+
+    private static final int WARMUP_BATCH = 10000;
+    private static final int MAX_RESULTS = 20;
+
+    private final UserRepository userRepository;
+    private final MeterRegistry meterRegistry;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    @Value("${users.search-index.max-entries:1000000}")
+    private int maxEntries;
+
+    @Value("${users.search-index.merge-threshold:1024}")
+    private int mergeThreshold;
+
+    @Value("${users.search-index.channel:messenger:users:registered}")
+    private String registrationChannel;
+
+    private UsernameIndex index;
+    private volatile boolean ready;
+
+    @PostConstruct
+    void init() {
+        index = new UsernameIndex(maxEntries, mergeThreshold);
+        Gauge.builder("messenger.user.index.size", index, UsernameIndex::size)
+                .register(meterRegistry);
+        listenerContainer.addMessageListener(this::onRegistrationMessage, new ChannelTopic(registrationChannel));
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        long start = System.currentTimeMillis();
+        List<UsernameIndex.Match> users = new ArrayList<>();
+        String after = "";
+        List<UserRepository.UsernameView> batch;
+        do {
+            batch = userRepository.findUsernamesAfter(after, PageRequest.of(0, WARMUP_BATCH));
+            batch.forEach(u -> users.add(new UsernameIndex.Match(u.getUserId(), u.getUsername())));
+            if (!batch.isEmpty()) {
+                after = batch.get(batch.size() - 1).getUsername();
+            }
+        } while (batch.size() == WARMUP_BATCH && users.size() <= maxEntries);
+
+        index.load(users);
+        ready = true;
+        log.info("Username index loaded: {} users in {} ms (complete: {})",
+                index.size(), System.currentTimeMillis() - start, index.isComplete());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onUserRegistered(UserEvents.Registered event) {
+        index.add(event.getUserId(), event.getUsername());
+        try {
+            redisTemplate.convertAndSend(registrationChannel, event.getUserId() + " " + event.getUsername());
+        } catch (Exception e) {
+            // Other nodes find the user once their index is reloaded; until then only here
+            log.warn("Failed to publish registration of {}: {}", event.getUsername(), e.getMessage());
+        }
+    }
+
+    /**
+     * Registration on any node, including this one: adding an indexed user again is a no-op.
+     */
+    private void onRegistrationMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(' ');
+        try {
+            index.add(UUID.fromString(body.substring(0, separator)), body.substring(separator + 1));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            log.warn("Ignoring malformed registration message: {}", body);
+        }
+    }
+
+    /**
+     * Returns users whose username starts with the prefix (case-insensitive),
+     * excluding the caller.
+     */
+    public List<ContactDTO> autocomplete(String prefix, UUID excludeUserId, int limit) {
+        String trimmed = prefix != null ? prefix.trim() : "";
+        if (trimmed.isEmpty()) {
+            return List.of();
+        }
+        int max = Math.min(Math.max(limit, 1), MAX_RESULTS);
+
+        if (ready && index.isComplete()) {
+            return index.search(trimmed, max + 1).stream()
+                    .filter(m -> !m.getUserId().equals(excludeUserId))
+                    .limit(max)
+                    .map(m -> ContactDTO.builder()
+                            .userId(m.getUserId().toString())
+                            .username(m.getUsername())
+                            .build())
+                    .collect(Collectors.toList());
+        }
+
+        return userRepository.findByUsernamePrefix(excludeUserId,
+                        UserRepository.prefixPattern(trimmed), PageRequest.of(0, max))
+                .stream()
+                .map(u -> ContactDTO.builder()
+                        .userId(u.getUserId().toString())
+                        .username(u.getUsername())
+                        .build())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,243 @@
+package com.messenger.service;
+
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In-memory, case-insensitive prefix index over usernames.
+ *
+ * The bulk of the entries lives in an immutable snapshot of parallel sorted arrays
+ * (lowercase key, original username, user id as two longs), searched with binary
+ * search. New entries go to a small concurrent skip list and are merged into a new
+ * snapshot once it reaches {@code mergeThreshold}. Readers never lock: they walk
+ * the current snapshot and the skip list side by side.
+ *
+ * Footprint is roughly 80 bytes per user (lowercase key string, shared with the
+ * username when it is already lowercase, plus 16 bytes of id), i.e. about 80 MB per
+ * million users. Once {@code maxEntries} is reached further additions are dropped
+ * and {@link #isComplete()} turns false so callers can fall back to the database.
+ */
+public class UsernameIndex {
+
+    private final int maxEntries;
+    private final int mergeThreshold;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    // Key: lowercase username + '\0' + username, so case variants of one name do not collide
+    private final ConcurrentSkipListMap<String, UUID> pending = new ConcurrentSkipListMap<>();
+    private volatile boolean overflow;
+
+    public UsernameIndex(int maxEntries, int mergeThreshold) {
+        this.maxEntries = maxEntries;
+        this.mergeThreshold = mergeThreshold;
+    }
+
+    /**
+     * Replaces the whole index content. Entries added concurrently stay pending and
+     * are merged on the next insert.
+     */
+    public synchronized void load(List<Match> users) {
+        int count = Math.min(users.size(), maxEntries);
+        Match[] sorted = users.subList(0, count).toArray(new Match[0]);
+        Arrays.sort(sorted, (a, b) -> compare(key(a.getUsername()), a.getUsername(),
+                key(b.getUsername()), b.getUsername()));
+        snapshot = Snapshot.of(sorted);
+        overflow = users.size() > maxEntries;
+    }
+
+    public void add(UUID userId, String username) {
+        if (size() >= maxEntries) {
+            overflow = true;
+            return;
+        }
+        pending.put(key(username) + '\0' + username, userId);
+        if (pending.size() >= mergeThreshold) {
+            merge();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} users whose username starts with {@code prefix}
+     * (case-insensitive), ordered by lowercase username.
+     */
+    public List<Match> search(String prefix, int limit) {
+        String keyPrefix = key(prefix);
+        Snapshot base = snapshot;
+        List<Match> result = new ArrayList<>(Math.min(limit, 16));
+
+        int i = base.lowerBound(keyPrefix);
+        Iterator<Map.Entry<String, UUID>> it = pending.tailMap(keyPrefix, true).entrySet().iterator();
+        Map.Entry<String, UUID> next = nextMatching(it, keyPrefix);
+
+        while (result.size() < limit) {
+            boolean baseHas = i < base.size() && base.keys[i].startsWith(keyPrefix);
+            if (!baseHas && next == null) {
+                break;
+            }
+            if (!baseHas) {
+                result.add(pendingMatch(next));
+                next = nextMatching(it, keyPrefix);
+                continue;
+            }
+            if (next == null) {
+                result.add(base.match(i++));
+                continue;
+            }
+
+            String pendingName = pendingName(next.getKey());
+            int cmp = compare(base.keys[i], base.names[i], key(pendingName), pendingName);
+            if (cmp < 0) {
+                result.add(base.match(i++));
+            } else if (cmp > 0) {
+                result.add(pendingMatch(next));
+                next = nextMatching(it, keyPrefix);
+            } else {
+                // Already merged but not yet removed from pending
+                result.add(base.match(i++));
+                next = nextMatching(it, keyPrefix);
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return snapshot.size() + pending.size();
+    }
+
+    public boolean isComplete() {
+        return !overflow;
+    }
+
+    private synchronized void merge() {
+        if (pending.size() < mergeThreshold) {
+            return;
+        }
+        List<Map.Entry<String, UUID>> batch = new ArrayList<>(pending.entrySet());
+        Snapshot base = snapshot;
+        List<Match> merged = new ArrayList<>(base.size() + batch.size());
+
+        int i = 0;
+        int j = 0;
+        while (i < base.size() || j < batch.size()) {
+            if (j >= batch.size()) {
+                merged.add(base.match(i++));
+                continue;
+            }
+            Match candidate = pendingMatch(batch.get(j));
+            if (i >= base.size()) {
+                merged.add(candidate);
+                j++;
+                continue;
+            }
+            int cmp = compare(base.keys[i], base.names[i], key(candidate.getUsername()), candidate.getUsername());
+            if (cmp < 0) {
+                merged.add(base.match(i++));
+            } else if (cmp > 0) {
+                merged.add(candidate);
+                j++;
+            } else {
+                merged.add(candidate);
+                i++;
+                j++;
+            }
+        }
+
+        snapshot = Snapshot.of(merged.toArray(new Match[0]));
+        batch.forEach(e -> pending.remove(e.getKey(), e.getValue()));
+    }
+
+    private static Map.Entry<String, UUID> nextMatching(Iterator<Map.Entry<String, UUID>> it, String keyPrefix) {
+        if (!it.hasNext()) {
+            return null;
+        }
+        Map.Entry<String, UUID> entry = it.next();
+        return entry.getKey().startsWith(keyPrefix) ? entry : null;
+    }
+
+    private static Match pendingMatch(Map.Entry<String, UUID> entry) {
+        return new Match(entry.getValue(), pendingName(entry.getKey()));
+    }
+
+    private static String pendingName(String pendingKey) {
+        return pendingKey.substring(pendingKey.indexOf('\0') + 1);
+    }
+
+    private static int compare(String keyA, String nameA, String keyB, String nameB) {
+        int cmp = keyA.compareTo(keyB);
+        return cmp != 0 ? cmp : nameA.compareTo(nameB);
+    }
+
+    static String key(String username) {
+        String lower = username.toLowerCase(Locale.ROOT);
+        // Reuse the same instance when nothing changed to avoid storing the string twice
+        return lower.equals(username) ? username : lower;
+    }
+
+    @Value
+    public static class Match {
+        UUID userId;
+        String username;
+    }
+
+    private static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(new String[0], new String[0], new long[0], new long[0]);
+
+        final String[] keys;
+        final String[] names;
+        final long[] idHigh;
+        final long[] idLow;
+
+        private Snapshot(String[] keys, String[] names, long[] idHigh, long[] idLow) {
+            this.keys = keys;
+            this.names = names;
+            this.idHigh = idHigh;
+            this.idLow = idLow;
+        }
+
+        static Snapshot of(Match[] sorted) {
+            int n = sorted.length;
+            String[] keys = new String[n];
+            String[] names = new String[n];
+            long[] idHigh = new long[n];
+            long[] idLow = new long[n];
+            for (int i = 0; i < n; i++) {
+                names[i] = sorted[i].getUsername();
+                keys[i] = key(names[i]);
+                idHigh[i] = sorted[i].getUserId().getMostSignificantBits();
+                idLow[i] = sorted[i].getUserId().getLeastSignificantBits();
+            }
+            return new Snapshot(keys, names, idHigh, idLow);
+        }
+
+        int size() {
+            return keys.length;
+        }
+
+        int lowerBound(String keyPrefix) {
+            int lo = 0;
+            int hi = keys.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (keys[mid].compareTo(keyPrefix) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        Match match(int i) {
+            return new Match(new UUID(idHigh[i], idLow[i]), names[i]);
+        }
+    }
+}
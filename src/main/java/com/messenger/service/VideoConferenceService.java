@@ -20,22 +20,17 @@ public class VideoConferenceService {
     private final ConferenceParticipantRepository participantRepository;
     private final ChatRepository chatRepository;
     private final UserRepository userRepository;
+    private final ChatAuthorizationService chatAuthorizationService;
 
     @Transactional
     public VideoConference createConference(UUID chatId, String initiatorUsername, 
                                           VideoConference.ConferenceType type) {
-        User initiator = userRepository.findByUsername(initiatorUsername)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        UUID initiatorId = chatAuthorizationService.requireMember(initiatorUsername, chatId);
+        User initiator = userRepository.getReferenceById(initiatorId);
 
         Chat chat = chatRepository.findById(chatId)
                 .orElseThrow(() -> new RuntimeException("Chat not found"));
 
-        // Check if user is member of chat
-        if (!chat.getUserChats().stream()
-                .anyMatch(uc -> uc.getUser().getId().equals(initiator.getId()))) {
-            throw new RuntimeException("User is not a member of this chat");
-        }
-
         // Generate unique room ID
         String roomId = UUID.randomUUID().toString();
 
@@ -74,8 +69,7 @@ public class VideoConferenceService {
     @Transactional
     public ConferenceParticipant joinConference(UUID conferenceId, String username, 
                                                boolean videoEnabled, boolean audioEnabled) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        User user = userRepository.getReferenceById(chatAuthorizationService.resolveUserId(username));
 
         VideoConference conference = conferenceRepository.findById(conferenceId)
                 .orElseThrow(() -> new RuntimeException("Conference not found"));
@@ -84,6 +78,10 @@ public class VideoConferenceService {
             throw new RuntimeException("Conference is not active");
         }
 
+        if (!chatAuthorizationService.isMember(user.getId(), conference.getChat().getId())) {
+            throw new RuntimeException("User is not a member of this chat");
+        }
+
         // Check if already joined
         var existing = participantRepository.findByConferenceIdAndUserId(conferenceId, user.getId());
         if (existing.isPresent()) {
@@ -115,8 +113,7 @@ public class VideoConferenceService {
 
     @Transactional
     public void leaveConference(UUID conferenceId, String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        User user = userRepository.getReferenceById(chatAuthorizationService.resolveUserId(username));
 
         ConferenceParticipant participant = participantRepository
                 .findByConferenceIdAndUserId(conferenceId, user.getId())
@@ -144,8 +141,7 @@ public class VideoConferenceService {
     public void updateMediaState(UUID conferenceId, String username, 
                                 boolean videoEnabled, boolean audioEnabled, 
                                 boolean screenSharing) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        User user = userRepository.getReferenceById(chatAuthorizationService.resolveUserId(username));
 
         ConferenceParticipant participant = participantRepository
                 .findByConferenceIdAndUserId(conferenceId, user.getId())
@@ -164,8 +160,7 @@ public class VideoConferenceService {
 
     @Transactional
     public void endConference(UUID conferenceId, String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        User user = userRepository.getReferenceById(chatAuthorizationService.resolveUserId(username));
 
         VideoConference conference = conferenceRepository.findById(conferenceId)
                 .orElseThrow(() -> new RuntimeException("Conference not found"));
@@ -198,9 +193,8 @@ public class VideoConferenceService {
     @Transactional(readOnly = true)
     public List<VideoConference> getMissedCalls(String username) {
         try {
-            User user = userRepository.findByUsername(username)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-            List<VideoConference> calls = conferenceRepository.findMissedCallsForUser(user.getId());
+            UUID userId = chatAuthorizationService.resolveUserId(username);
+            List<VideoConference> calls = conferenceRepository.findMissedCallsForUser(userId);
             log.debug("Found {} missed calls for user {}", calls.size(), username);
             return calls;
         } catch (Exception e) {
@@ -0,0 +1,392 @@
+package com.messenger.service;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Кольцевой буфер фреймов одного потока: один писатель, много читателей.
+ *
+ * Фрейм с номером seq лежит в слоте seq % capacity. Курсоры head (последний
+ * записанный номер) и tail (самый старый доступный номер) атомарны; писатель
+ * сначала кладет фрейм в слот и только потом публикует head, поэтому читатель
+ * без блокировок видит либо целый фрейм, либо уже перезаписанный слот (его
+ * номер не совпадает с ожидаемым - такой фрейм пропускается).
+ *
+ * Запись сериализована монитором кольца: у потока один отправитель, так что
+ * блокировка практически никогда не конкурентна.
+ *
+ * С {@link FrameMemoryPool} данные фреймов лежат off-heap: кольцо владеет блоком
+ * от записи до вытеснения, читатель захватывает блок на время копирования. Если
+ * бюджет пула исчерпан, кольцо вытесняет свои самые старые фреймы, а если их нет -
+ * отбрасывает новый фрейм.
+ *
+ * Ключевые кадры индексируются, и после первого из них кольцо работает по GOP
+ * (ключевой кадр и зависящие от него дельта-кадры): вытесняются только целые GOP.
+ * Если в кольце не осталось места даже для текущей GOP, кольцо очищается и до
+ * нового ключевого кадра дельта-кадры отбрасываются: начало GOP без ее продолжения
+ * дало бы при восстановлении устаревшую картинку. Кольцо при этом просит ключевой
+ * кадр у отправителя ({@link #takeKeyframeRequest()}). Так буфер всегда начинается с
+ * ключевого кадра и декодируется без пропусков, а восстановление начинается с
+ * последнего ключевого кадра. Потоки без разметки ключевых кадров вытесняются
+ * пофреймово, как раньше.
+ *
+ * Объем кольца дополнительно учитывается в общем счетчике узла (nodeBytes), по
+ * которому {@link VideoMemoryGovernor} решает, когда вытеснять фреймы других потоков.
+ */
+public final class VideoFrameRing {
+
+    private final AtomicReferenceArray<VideoStreamBuffer.VideoFrame> slots;
+    private final int capacity;
+    private final long maxBytes;
+    private final FrameMemoryPool pool;  // null - фреймы хранятся в куче
+    private final AtomicLong nodeBytes;  // null - без общего учета
+    private final long createdTime = System.currentTimeMillis();
+
+    private final AtomicLong head = new AtomicLong(0);  // 0 - фреймов еще не было
+    private final AtomicLong tail = new AtomicLong(1);
+    private final AtomicLong sizeBytes = new AtomicLong(0);
+    private final AtomicLong droppedFrames = new AtomicLong(0);
+    private volatile long lastAccessTime = System.currentTimeMillis();
+    private volatile long latestKeyframe = 0;  // 0 - в буфере нет ключевых кадров
+
+    // Состояние писателя, под монитором кольца
+    private final ArrayDeque<Long> keyframes = new ArrayDeque<>();  // номера ключевых кадров в буфере
+    private boolean keyframeAware;     // поток размечает ключевые кадры
+    private boolean awaitingKeyframe;  // GOP прервана, дельта-кадры бесполезны до ключевого
+    private boolean keyframeRequested; // GOP не поместилась в кольцо, отправителю нужен ключевой кадр
+    private boolean closed;
+
+    public VideoFrameRing(int capacity, long maxBytes) {
+        this(capacity, maxBytes, null);
+    }
+
+    public VideoFrameRing(int capacity, long maxBytes, FrameMemoryPool pool) {
+        this(capacity, maxBytes, pool, null);
+    }
+
+    public VideoFrameRing(int capacity, long maxBytes, FrameMemoryPool pool, AtomicLong nodeBytes) {
+        this.capacity = capacity;
+        this.maxBytes = maxBytes;
+        this.pool = pool;
+        this.nodeBytes = nodeBytes;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Добавляет фрейм, вытесняя самые старые по количеству и по объему.
+     *
+     * @return номер добавленного фрейма, или -1 если фрейм отброшен
+     */
+    public synchronized long append(byte[] data, long timestamp) {
+        return append(ByteBuffer.wrap(data), data, timestamp, false);
+    }
+
+    public synchronized long append(byte[] data, long timestamp, boolean keyframe) {
+        return append(ByteBuffer.wrap(data), data, timestamp, keyframe);
+    }
+
+    /**
+     * То же для буфера (оставшиеся байты); позиция буфера не меняется. В режиме
+     * off-heap данные копируются прямо в блок пула, минуя промежуточный массив.
+     */
+    public synchronized long append(ByteBuffer data, long timestamp) {
+        return append(data, null, timestamp, false);
+    }
+
+    public synchronized long append(ByteBuffer data, long timestamp, boolean keyframe) {
+        return append(data, null, timestamp, keyframe);
+    }
+
+    /**
+     * Отмечает фрейм, пропущенный мимо буфера: следующие дельта-кадры уже не
+     * декодируются, поэтому до ключевого кадра они не буферизуются.
+     */
+    public synchronized void skipFrame(boolean keyframe) {
+        if (keyframe || keyframeAware) {
+            keyframeAware = true;
+            awaitingKeyframe = true;
+        }
+    }
+
+    private long append(ByteBuffer data, byte[] array, long timestamp, boolean keyframe) {
+        if (closed) {
+            return -1;
+        }
+        if (keyframe) {
+            keyframeAware = true;
+            awaitingKeyframe = false;
+            keyframeRequested = false;
+        } else if (awaitingKeyframe) {
+            return drop();
+        }
+        int length = data.remaining();
+        long seq = head.get() + 1;
+
+        // По количеству (слот нового фрейма занят самым старым) и по объему
+        while (seq - tail.get() >= capacity || (sizeBytes.get() + length > maxBytes && tail.get() < seq)) {
+            if (!evictOldestGop()) {
+                // Текущая GOP заняла все кольцо: новый ключевой кадр заменяет ее, а без
+                // него кольцо пустеет до следующего ключевого кадра
+                evictAll();
+                if (!keyframe) {
+                    keyframeRequested = true;
+                    return drop();
+                }
+            }
+        }
+
+        VideoStreamBuffer.VideoFrame frame;
+        if (pool != null) {
+            FrameMemoryPool.Block block = pool.allocate(length);
+            // Бюджет пула общий: освобождаем место за счет своих старых фреймов
+            while (block == null && tail.get() < seq) {
+                if (!evictOldestGop()) {
+                    evictAll();
+                    if (!keyframe) {
+                        break;  // ключевой кадр не просим: памяти не хватает и так
+                    }
+                }
+                block = pool.allocate(length);
+            }
+            if (block == null) {
+                return drop();
+            }
+            block.write(data);
+            frame = new VideoStreamBuffer.VideoFrame(block, timestamp, seq, keyframe);
+        } else {
+            byte[] bytes = array;
+            if (bytes == null) {
+                bytes = new byte[length];
+                data.duplicate().get(bytes);
+            }
+            frame = new VideoStreamBuffer.VideoFrame(bytes, timestamp, seq, keyframe);
+        }
+
+        slots.set(index(seq), frame);
+        addBytes(length);
+        if (keyframe) {
+            keyframes.addLast(seq);
+            latestKeyframe = seq;
+        }
+        head.set(seq);
+        lastAccessTime = System.currentTimeMillis();
+        return seq;
+    }
+
+    /**
+     * Фреймы начиная с номера fromSequence (или с самого старого доступного). Если
+     * после fromSequence был ключевой кадр или часть запрошенных фреймов уже
+     * вытеснена - начиная с последнего ключевого кадра: более ранние фреймы получателю
+     * не нужны или без них не декодировать.
+     */
+    public byte[][] getFrames(long fromSequence) {
+        lastAccessTime = System.currentTimeMillis();
+        long keyframe = latestKeyframe;
+        long last = head.get();
+        long oldest = tail.get();
+        if (keyframe >= oldest && (fromSequence < oldest || keyframe >= fromSequence)) {
+            return collect(keyframe, last, true);
+        }
+        return collect(Math.max(fromSequence, oldest), last, false);
+    }
+
+    /**
+     * Последние count фреймов. Если в буфере есть ключевой кадр - все фреймы начиная с
+     * последнего из них, сколько бы их ни было: меньшее число не декодировать.
+     */
+    public byte[][] getLastFrames(int count) {
+        lastAccessTime = System.currentTimeMillis();
+        long keyframe = latestKeyframe;
+        long last = head.get();
+        long oldest = tail.get();
+        if (keyframe >= oldest) {
+            return collect(keyframe, last, true);
+        }
+        return collect(Math.max(oldest, last - count + 1), last, false);
+    }
+
+    /**
+     * Нужен ли отправителю запрос ключевого кадра: текущая GOP не поместилась в кольцо.
+     * Возвращает true один раз на каждое такое переполнение.
+     */
+    public synchronized boolean takeKeyframeRequest() {
+        boolean requested = keyframeRequested;
+        keyframeRequested = false;
+        return requested;
+    }
+
+    /**
+     * Номер последнего ключевого кадра в буфере, 0 - нет.
+     */
+    public long getLatestKeyframe() {
+        return latestKeyframe;
+    }
+
+    public int getFrameCount() {
+        long last = head.get();
+        long first = tail.get();
+        return last >= first ? (int) (last - first + 1) : 0;
+    }
+
+    public long getSizeBytes() {
+        return sizeBytes.get();
+    }
+
+    public long getLastSequenceNumber() {
+        return head.get();
+    }
+
+    /**
+     * Время последней записи или чтения.
+     */
+    public long getLastAccessTime() {
+        return lastAccessTime;
+    }
+
+    public long getCreatedTime() {
+        return createdTime;
+    }
+
+    /**
+     * Фреймы, не попавшие в буфер: не хватило бюджета off-heap памяти, места в
+     * текущей GOP или GOP уже прервана.
+     */
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    /**
+     * Вытесняет самые старые GOP, пока не освободится bytes байт или кольцо не опустеет.
+     *
+     * @return сколько байт освобождено
+     */
+    public synchronized long evictBytes(long bytes) {
+        long before = sizeBytes.get();
+        while (before - sizeBytes.get() < bytes && tail.get() <= head.get()) {
+            if (!evictOldestGop()) {
+                evictAll();
+                awaitingKeyframe = true;
+            }
+        }
+        return before - sizeBytes.get();
+    }
+
+    /**
+     * Освобождает все фреймы; последующие append отбрасываются. Вызывается при
+     * удалении кольца из буфера - иначе off-heap блоки не вернутся в пул.
+     */
+    public synchronized void close() {
+        closed = true;
+        evictAll();
+    }
+
+    private long drop() {
+        droppedFrames.incrementAndGet();
+        if (keyframeAware) {
+            awaitingKeyframe = true;
+        }
+        return -1;
+    }
+
+    /**
+     * Вытесняет самую старую GOP (или фреймы до первого ключевого кадра); в потоке без
+     * ключевых кадров - один фрейм.
+     *
+     * @return false, если в буфере только текущая GOP
+     */
+    private boolean evictOldestGop() {
+        long oldest = tail.get();
+        if (oldest > head.get()) {
+            return false;
+        }
+        Iterator<Long> it = keyframes.iterator();
+        if (!it.hasNext()) {
+            evictOldest();
+            return true;
+        }
+        long end = it.next();
+        if (end == oldest) {
+            if (!it.hasNext()) {
+                return false;
+            }
+            end = it.next();
+        }
+        while (tail.get() < end) {
+            evictOldest();
+        }
+        return true;
+    }
+
+    private void evictAll() {
+        while (tail.get() <= head.get()) {
+            evictOldest();
+        }
+    }
+
+    private void evictOldest() {
+        long oldest = tail.get();
+        if (oldest > head.get()) {
+            return;
+        }
+        int index = index(oldest);
+        VideoStreamBuffer.VideoFrame frame = slots.get(index);
+        if (frame != null && frame.getSequenceNumber() == oldest) {
+            // Освобождаем память сразу, не дожидаясь перезаписи слота
+            if (slots.compareAndSet(index, frame, null)) {
+                addBytes(-frame.getSize());
+                frame.release();
+            }
+        }
+        tail.set(oldest + 1);
+        if (!keyframes.isEmpty() && keyframes.peekFirst() == oldest) {
+            keyframes.pollFirst();
+            latestKeyframe = keyframes.isEmpty() ? 0 : keyframes.peekLast();
+        }
+    }
+
+    /**
+     * @param fromKeyframe first - ключевой кадр; если его уже вытеснили, без него
+     *                     остальное бесполезно и возвращается пустой массив
+     */
+    private byte[][] collect(long first, long last, boolean fromKeyframe) {
+        if (first > last) {
+            return new byte[0][];
+        }
+        byte[][] result = new byte[(int) (last - first + 1)][];
+        int count = 0;
+        for (long seq = first; seq <= last; seq++) {
+            VideoStreamBuffer.VideoFrame frame = slots.get(index(seq));
+            // Слот мог быть перезаписан или очищен писателем после чтения курсоров
+            if (frame != null && frame.getSequenceNumber() == seq) {
+                byte[] data = frame.readData();
+                if (data != null) {
+                    result[count++] = data;
+                    continue;
+                }
+            }
+            if (fromKeyframe && seq == first) {
+                return new byte[0][];
+            }
+        }
+        if (count < result.length) {
+            byte[][] trimmed = new byte[count][];
+            System.arraycopy(result, 0, trimmed, 0, count);
+            return trimmed;
+        }
+        return result;
+    }
+
+    private void addBytes(long delta) {
+        sizeBytes.addAndGet(delta);
+        if (nodeBytes != null) {
+            nodeBytes.addAndGet(delta);
+        }
+    }
+
+    private int index(long seq) {
+        return (int) (seq % capacity);
+    }
+}
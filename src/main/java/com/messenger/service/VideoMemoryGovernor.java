@@ -0,0 +1,203 @@
+package com.messenger.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Общий бюджет памяти видеобуферов узла.
+ *
+ * Кольца всех потоков учитывают свой объем в одном счетчике. Когда он превышает
+ * верхнюю отметку, фреймы вытесняются из потоков в порядке политики, пока объем не
+ * опустится до нижней отметки. Вытеснение выполняет тот поток, который первым
+ * заметил превышение, остальные не ждут.
+ *
+ * Уровень давления ({@link #getPressure()}) - сигнал для приема фреймов: при HIGH
+ * буферизуются только ключевые кадры, при CRITICAL - ничего. HIGH держится
+ * pressure-hold-ms после того, как вытеснение понадобилось дважды за это время:
+ * дельта-кадры все равно были бы вытеснены раньше, чем пригодятся для восстановления.
+ */
+@Slf4j
+@Component
+public class VideoMemoryGovernor {
+
+    public enum EvictionPolicy {
+        OLDEST,    // сначала потоки, созданные раньше всех
+        LRU,       // сначала потоки, к которым дольше всех не обращались
+        PRIORITY   // как LRU, но потоки активных спикеров - последними
+    }
+
+    public enum Pressure {
+        NORMAL, HIGH, CRITICAL
+    }
+
+    private final long budgetBytes;
+    private final long highWatermarkBytes;
+    private final long lowWatermarkBytes;
+    private final EvictionPolicy policy;
+    private final long speakerTtlMs;
+    private final long pressureHoldMs;
+
+    private final AtomicLong usedBytes = new AtomicLong();
+    // ключ потока -> когда участник последний раз был отмечен говорящим
+    private final Map<String, Long> activeSpeakers = new ConcurrentHashMap<>();
+    private final ReentrantLock reclaimLock = new ReentrantLock();
+    private final Counter evictedBytes;
+    private final Counter reclaimRuns;
+
+    private volatile long lastReclaimTime;
+    private volatile long lastThrashTime;
+    private volatile Pressure reportedPressure = Pressure.NORMAL;
+
+    public VideoMemoryGovernor(@Value("${video.buffer.global.budget-bytes:268435456}") long budgetBytes,
+                               @Value("${video.buffer.global.high-watermark:0.9}") double highWatermark,
+                               @Value("${video.buffer.global.low-watermark:0.75}") double lowWatermark,
+                               @Value("${video.buffer.global.eviction-policy:LRU}") EvictionPolicy policy,
+                               @Value("${video.buffer.global.speaker-ttl-ms:5000}") long speakerTtlMs,
+                               @Value("${video.buffer.global.pressure-hold-ms:5000}") long pressureHoldMs,
+                               MeterRegistry meterRegistry) {
+        if (!(0 < lowWatermark && lowWatermark < highWatermark && highWatermark <= 1)) {
+            throw new IllegalArgumentException("Video buffer watermarks must satisfy 0 < low < high <= 1, got "
+                    + lowWatermark + " / " + highWatermark);
+        }
+        this.budgetBytes = budgetBytes;
+        this.highWatermarkBytes = (long) (budgetBytes * highWatermark);
+        this.lowWatermarkBytes = (long) (budgetBytes * lowWatermark);
+        this.policy = policy;
+        this.speakerTtlMs = speakerTtlMs;
+        this.pressureHoldMs = pressureHoldMs;
+
+        Gauge.builder("messenger.video.buffer.bytes", usedBytes, AtomicLong::get)
+                .description("Bytes held by all video recovery buffers of the node")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("messenger.video.buffer.budget", () -> budgetBytes)
+                .description("Node-wide budget of video recovery buffers")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("messenger.video.buffer.pressure", this, g -> g.getPressure().ordinal())
+                .description("Buffer pressure: 0 - normal, 1 - keyframes only, 2 - buffering suspended")
+                .register(meterRegistry);
+        evictedBytes = Counter.builder("messenger.video.buffer.evicted")
+                .description("Bytes evicted to keep video buffers within the node budget")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        reclaimRuns = Counter.builder("messenger.video.buffer.reclaims")
+                .description("Runs of node-wide video buffer eviction")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Общий счетчик байт, передается кольцам при создании.
+     */
+    AtomicLong usageCounter() {
+        return usedBytes;
+    }
+
+    public Pressure getPressure() {
+        long used = usedBytes.get();
+        if (used >= budgetBytes) {
+            return Pressure.CRITICAL;
+        }
+        if (used > highWatermarkBytes || System.currentTimeMillis() - lastThrashTime < pressureHoldMs) {
+            return Pressure.HIGH;
+        }
+        return Pressure.NORMAL;
+    }
+
+    /**
+     * Стоит ли буферизовать фрейм при текущем давлении.
+     */
+    public boolean admits(boolean keyframe) {
+        Pressure pressure = getPressure();
+        return pressure == Pressure.NORMAL || (pressure == Pressure.HIGH && keyframe);
+    }
+
+    /**
+     * Отмечает, что участник говорит (или перестал). Отметка истекает через speaker-ttl-ms,
+     * клиенты повторяют ее, пока участник говорит.
+     */
+    public void markActiveSpeaker(String streamKey, boolean speaking) {
+        if (speaking) {
+            activeSpeakers.put(streamKey, System.currentTimeMillis());
+        } else {
+            activeSpeakers.remove(streamKey);
+        }
+    }
+
+    public void forgetStream(String streamKey) {
+        activeSpeakers.remove(streamKey);
+    }
+
+    /**
+     * Вызывается после добавления фрейма: при превышении верхней отметки вытесняет
+     * фреймы потоков в порядке политики до нижней отметки.
+     */
+    public void enforce(Map<String, VideoFrameRing> streams) {
+        if (usedBytes.get() > highWatermarkBytes && reclaimLock.tryLock()) {
+            try {
+                reclaim(streams);
+            } finally {
+                reclaimLock.unlock();
+            }
+        }
+        Pressure pressure = getPressure();
+        if (pressure != reportedPressure) {
+            log.info("📊 Давление видеобуферов: {} -> {} ({} MB из {} MB)", reportedPressure, pressure,
+                    usedBytes.get() / (1024 * 1024), budgetBytes / (1024 * 1024));
+            reportedPressure = pressure;
+        }
+    }
+
+    private void reclaim(Map<String, VideoFrameRing> streams) {
+        long used = usedBytes.get();
+        if (used <= highWatermarkBytes) {
+            return;  // уже освободил другой поток
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastReclaimTime < pressureHoldMs) {
+            lastThrashTime = now;
+        }
+        lastReclaimTime = now;
+        activeSpeakers.values().removeIf(since -> now - since > speakerTtlMs);
+
+        // Снимок ключей сортировки: время доступа меняется во время сортировки
+        List<Candidate> candidates = new ArrayList<>(streams.size());
+        streams.forEach((key, ring) -> candidates.add(new Candidate(ring,
+                policy == EvictionPolicy.PRIORITY && activeSpeakers.containsKey(key),
+                policy == EvictionPolicy.OLDEST ? ring.getCreatedTime() : ring.getLastAccessTime())));
+        candidates.sort(Comparator.comparing(Candidate::speaker).thenComparingLong(Candidate::rank));
+
+        long toFree = used - lowWatermarkBytes;
+        long freed = 0;
+        int touched = 0;
+        for (Candidate candidate : candidates) {
+            if (freed >= toFree) {
+                break;
+            }
+            long released = candidate.ring().evictBytes(toFree - freed);
+            if (released > 0) {
+                freed += released;
+                touched++;
+            }
+        }
+        reclaimRuns.increment();
+        evictedBytes.increment(freed);
+        log.debug("🧹 Вытеснено {} KB из {} потоков (политика {}), занято {} KB",
+                freed / 1024, touched, policy, usedBytes.get() / 1024);
+    }
+
+    private record Candidate(VideoFrameRing ring, boolean speaker, long rank) {
+    }
+}
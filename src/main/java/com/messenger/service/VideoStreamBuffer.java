@@ -1,14 +1,22 @@
 package com.messenger.service;
 
+import com.messenger.dto.MediaFrame;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Component;
 
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.concurrent.*;
 
 /**
  * Буфер для кэширования видео потока
- * Хранит последние фреймы для воспроизведения при обрыве связи
+ * Хранит последние фреймы для воспроизведения при обрыве связи.
+ * Общий объем всех потоков узла ограничивает {@link VideoMemoryGovernor}.
  */
 @Slf4j
 @Component
@@ -20,88 +28,141 @@ public class VideoStreamBuffer {
     // Максимальный размер буфера для одного участника (в байтах)
     private static final long MAX_BUFFER_SIZE_BYTES = 10 * 1024 * 1024; // 10 MB
     
-    // Хранилище буферов по ID конференции и участнику
-    private final Map<String, ConcurrentLinkedQueue<VideoFrame>> buffers = new ConcurrentHashMap<>();
+    // Кольцевые буферы по ID конференции и участнику
+    private final Map<String, VideoFrameRing> buffers = new ConcurrentHashMap<>();
     
-    // Метаданные потоков
-    private final Map<String, StreamMetadata> metadata = new ConcurrentHashMap<>();
+    // Пул off-heap памяти фреймов (null - фреймы хранятся в куче)
+    private final FrameMemoryPool memoryPool;
+    private final VideoMemoryGovernor governor;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final Counter droppedFrames;
+    private final Counter refusedFrames;
     
     // Cleanup scheduler
     private final ScheduledExecutorService cleanupScheduler = Executors.newSingleThreadScheduledExecutor();
 
-    public VideoStreamBuffer() {
+    public VideoStreamBuffer(@Value("${video.buffer.storage:HEAP}") StorageMode storageMode,
+                             @Value("${video.buffer.offheap.budget-bytes:536870912}") long offHeapBudgetBytes,
+                             VideoMemoryGovernor governor,
+                             SimpMessagingTemplate messagingTemplate,
+                             MeterRegistry meterRegistry) {
+        this.governor = governor;
+        this.messagingTemplate = messagingTemplate;
+        if (storageMode == StorageMode.OFF_HEAP) {
+            memoryPool = new FrameMemoryPool(offHeapBudgetBytes);
+            Gauge.builder("messenger.video.offheap.reserved", memoryPool, FrameMemoryPool::getReservedBytes)
+                    .description("Direct memory held by the video frame pool")
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+            Gauge.builder("messenger.video.offheap.used", memoryPool, FrameMemoryPool::getUsedBytes)
+                    .description("Direct memory occupied by buffered video frames")
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+            log.info("📦 Видеофреймы хранятся off-heap, бюджет {} MB", offHeapBudgetBytes / (1024 * 1024));
+        } else {
+            memoryPool = null;
+        }
+        droppedFrames = Counter.builder("messenger.video.buffer.dropped")
+                .description("Frames not buffered: current GOP full, GOP interrupted or off-heap budget exhausted")
+                .register(meterRegistry);
+        refusedFrames = Counter.builder("messenger.video.buffer.refused")
+                .description("Frames not buffered because of node-wide buffer pressure")
+                .register(meterRegistry);
+        Gauge.builder("messenger.video.buffer.streams", buffers, Map::size)
+                .description("Video streams with a recovery buffer")
+                .register(meterRegistry);
+
         // Запускаем периодическую очистку старых буферов
         cleanupScheduler.scheduleAtFixedRate(this::cleanupOldBuffers, 30, 30, TimeUnit.SECONDS);
     }
 
     /**
-     * Добавляет фрейм в буфер
+     * Добавляет фрейм в буфер. Ключевой кадр определяется по флагу клиента или по
+     * заголовку фрейма для известного кодека. При нехватке памяти узла фрейм может
+     * быть не буферизован (сохраняются только ключевые кадры, при критической - ничего);
+     * пересылку получателям это не отменяет.
      */
-    public void addFrame(String conferenceId, String participantId, byte[] frameData, long timestamp) {
-        String key = buildKey(conferenceId, participantId);
-        
-        ConcurrentLinkedQueue<VideoFrame> buffer = buffers.computeIfAbsent(key, k -> new ConcurrentLinkedQueue<>());
-        StreamMetadata meta = metadata.computeIfAbsent(key, k -> new StreamMetadata());
-        
-        // Проверяем размер буфера
-        if (meta.getCurrentSize() + frameData.length > MAX_BUFFER_SIZE_BYTES) {
-            // Удаляем старые фреймы
-            removeOldFrames(buffer, meta, frameData.length);
+    public void addFrame(String conferenceId, String participantId, byte[] frameData, long timestamp,
+                         MediaFrame.Codec codec, boolean keyframe) {
+        ByteBuffer data = ByteBuffer.wrap(frameData);
+        boolean key = keyframe || KeyframeDetector.isKeyframe(codec, data);
+        VideoFrameRing buffer = ring(conferenceId, participantId);
+        if (admit(buffer, key)) {
+            afterAppend(buffer, buffer.append(frameData, timestamp, key), conferenceId, participantId);
         }
-        
-        // Добавляем новый фрейм
-        VideoFrame frame = new VideoFrame();
-        frame.setData(frameData);
-        frame.setTimestamp(timestamp);
-        frame.setSequenceNumber(meta.getNextSequenceNumber());
-        
-        buffer.offer(frame);
-        meta.addFrame(frameData.length);
-        
-        // Ограничиваем количество фреймов
-        while (buffer.size() > BUFFER_SIZE) {
-            VideoFrame removed = buffer.poll();
-            if (removed != null) {
-                meta.removeFrame(removed.getData().length);
+    }
+
+    /**
+     * Добавляет фрейм из буфера (например, payload бинарного сообщения) без
+     * промежуточного массива в режиме off-heap
+     */
+    public void addFrame(String conferenceId, String participantId, ByteBuffer frameData, long timestamp,
+                         MediaFrame.Codec codec, boolean keyframe) {
+        boolean key = keyframe || KeyframeDetector.isKeyframe(codec, frameData);
+        VideoFrameRing buffer = ring(conferenceId, participantId);
+        if (admit(buffer, key)) {
+            afterAppend(buffer, buffer.append(frameData, timestamp, key), conferenceId, participantId);
+        }
+    }
+
+    private boolean admit(VideoFrameRing buffer, boolean keyframe) {
+        if (governor.admits(keyframe)) {
+            return true;
+        }
+        // Пропущенный кадр прерывает GOP: кольцо перестанет принимать ее дельта-кадры
+        buffer.skipFrame(keyframe);
+        refusedFrames.increment();
+        return false;
+    }
+
+    public VideoMemoryGovernor.Pressure getPressure() {
+        return governor.getPressure();
+    }
+
+    /**
+     * Отмечает активного спикера: его поток вытесняется последним (политика PRIORITY)
+     */
+    public void markActiveSpeaker(String conferenceId, String participantId, boolean speaking) {
+        governor.markActiveSpeaker(buildKey(conferenceId, participantId), speaking);
+    }
+
+    private VideoFrameRing ring(String conferenceId, String participantId) {
+        return buffers.computeIfAbsent(buildKey(conferenceId, participantId),
+                k -> new VideoFrameRing(BUFFER_SIZE, MAX_BUFFER_SIZE_BYTES, memoryPool, governor.usageCounter()));
+    }
+
+    private void afterAppend(VideoFrameRing buffer, long sequenceNumber, String conferenceId, String participantId) {
+        governor.enforce(buffers);
+        if (sequenceNumber < 0) {
+            droppedFrames.increment();
+            log.trace("📹 Фрейм для {} не буферизован: нет места в текущей GOP или off-heap бюджет исчерпан",
+                    buildKey(conferenceId, participantId));
+            if (buffer.takeKeyframeRequest()) {
+                // Буфер пуст до следующего ключевого кадра - просим отправителя не ждать интервала GOP
+                messagingTemplate.convertAndSendToUser(participantId, "/queue/video-keyframe-request",
+                        Map.of("conferenceId", conferenceId));
+                log.debug("📹 Запрошен ключевой кадр для {}", buildKey(conferenceId, participantId));
             }
+            return;
         }
-        
         log.trace("📹 Добавлен фрейм {} в буфер {} (размер: {})", 
-                frame.getSequenceNumber(), key, buffer.size());
+                sequenceNumber, buildKey(conferenceId, participantId), buffer.getFrameCount());
     }
 
     /**
      * Получает фреймы из буфера начиная с указанной последовательности
      */
     public byte[][] getFrames(String conferenceId, String participantId, long fromSequence) {
-        String key = buildKey(conferenceId, participantId);
-        ConcurrentLinkedQueue<VideoFrame> buffer = buffers.get(key);
-        
-        if (buffer == null || buffer.isEmpty()) {
-            return new byte[0][];
-        }
-        
-        return buffer.stream()
-                .filter(f -> f.getSequenceNumber() >= fromSequence)
-                .map(VideoFrame::getData)
-                .toArray(byte[][]::new);
+        VideoFrameRing buffer = buffers.get(buildKey(conferenceId, participantId));
+        return buffer != null ? buffer.getFrames(fromSequence) : new byte[0][];
     }
 
     /**
      * Получает последние N фреймов для воспроизведения
      */
     public byte[][] getLastFrames(String conferenceId, String participantId, int count) {
-        String key = buildKey(conferenceId, participantId);
-        ConcurrentLinkedQueue<VideoFrame> buffer = buffers.get(key);
-        
-        if (buffer == null || buffer.isEmpty()) {
-            return new byte[0][];
-        }
-        
-        return buffer.stream()
-                .skip(Math.max(0, buffer.size() - count))
-                .map(VideoFrame::getData)
-                .toArray(byte[][]::new);
+        VideoFrameRing buffer = buffers.get(buildKey(conferenceId, participantId));
+        return buffer != null ? buffer.getLastFrames(count) : new byte[0][];
     }
 
     /**
@@ -109,18 +170,16 @@ public class VideoStreamBuffer {
      */
     public byte[][] replayBuffer(String conferenceId, String participantId) {
         String key = buildKey(conferenceId, participantId);
-        ConcurrentLinkedQueue<VideoFrame> buffer = buffers.get(key);
+        VideoFrameRing buffer = buffers.get(key);
         
-        if (buffer == null || buffer.isEmpty()) {
+        if (buffer == null || buffer.getFrameCount() == 0) {
             log.debug("📼 Буфер пуст для {}, воспроизведение невозможно", key);
             return new byte[0][];
         }
         
-        log.info("📼 Воспроизведение буфера {} ({} фреймов)", key, buffer.size());
+        log.info("📼 Воспроизведение буфера {} ({} фреймов)", key, buffer.getFrameCount());
         
-        return buffer.stream()
-                .map(VideoFrame::getData)
-                .toArray(byte[][]::new);
+        return buffer.getFrames(0);
     }
 
     /**
@@ -128,8 +187,11 @@ public class VideoStreamBuffer {
      */
     public void clearBuffer(String conferenceId, String participantId) {
         String key = buildKey(conferenceId, participantId);
-        buffers.remove(key);
-        metadata.remove(key);
+        VideoFrameRing buffer = buffers.remove(key);
+        if (buffer != null) {
+            buffer.close();
+        }
+        governor.forgetStream(key);
         log.debug("🗑️ Очищен буфер {}", key);
     }
 
@@ -138,8 +200,14 @@ public class VideoStreamBuffer {
      */
     public void clearConferenceBuffers(String conferenceId) {
         String prefix = conferenceId + ":";
-        buffers.keySet().removeIf(key -> key.startsWith(prefix));
-        metadata.keySet().removeIf(key -> key.startsWith(prefix));
+        buffers.entrySet().removeIf(entry -> {
+            if (!entry.getKey().startsWith(prefix)) {
+                return false;
+            }
+            entry.getValue().close();
+            governor.forgetStream(entry.getKey());
+            return true;
+        });
         log.info("🗑️ Очищены все буферы для конференции {}", conferenceId);
     }
 
@@ -147,49 +215,34 @@ public class VideoStreamBuffer {
      * Получает статус буфера
      */
     public BufferStatus getStatus(String conferenceId, String participantId) {
-        String key = buildKey(conferenceId, participantId);
-        StreamMetadata meta = metadata.get(key);
-        ConcurrentLinkedQueue<VideoFrame> buffer = buffers.get(key);
+        VideoFrameRing buffer = buffers.get(buildKey(conferenceId, participantId));
         
-        if (meta == null || buffer == null) {
+        if (buffer == null) {
             return null;
         }
         
         BufferStatus status = new BufferStatus();
         status.setConferenceId(conferenceId);
         status.setParticipantId(participantId);
-        status.setFrameCount(buffer.size());
-        status.setTotalSizeBytes(meta.getCurrentSize());
-        status.setLastSequenceNumber(meta.getLastSequenceNumber());
+        status.setFrameCount(buffer.getFrameCount());
+        status.setTotalSizeBytes(buffer.getSizeBytes());
+        status.setLastSequenceNumber(buffer.getLastSequenceNumber());
+        status.setLastKeyframeSequenceNumber(buffer.getLatestKeyframe());
         
         return status;
     }
 
-    /**
-     * Удаляет старые фреймы для освобождения места
-     */
-    private void removeOldFrames(ConcurrentLinkedQueue<VideoFrame> buffer, 
-                                  StreamMetadata meta, long neededSpace) {
-        long freedSpace = 0;
-        while (freedSpace < neededSpace && !buffer.isEmpty()) {
-            VideoFrame removed = buffer.poll();
-            if (removed != null) {
-                freedSpace += removed.getData().length;
-                meta.removeFrame(removed.getData().length);
-            }
-        }
-    }
-
     /**
      * Очистка старых неиспользуемых буферов
      */
     private void cleanupOldBuffers() {
         long currentTime = System.currentTimeMillis();
         
-        metadata.entrySet().removeIf(entry -> {
+        buffers.entrySet().removeIf(entry -> {
             boolean isOld = (currentTime - entry.getValue().getLastAccessTime()) > 300000; // 5 минут
             if (isOld) {
-                buffers.remove(entry.getKey());
+                entry.getValue().close();
+                governor.forgetStream(entry.getKey());
                 log.debug("🧹 Очищен старый буфер {}", entry.getKey());
             }
             return isOld;
@@ -201,46 +254,73 @@ public class VideoStreamBuffer {
     }
 
     /**
-     * Класс для хранения видео фрейма
+     * Класс для хранения видео фрейма (неизменяемый, публикуется читателям без блокировок).
+     * Данные лежат либо в массиве в куче, либо в off-heap блоке {@link FrameMemoryPool}.
      */
     public static class VideoFrame {
-        private byte[] data;
-        private long timestamp;
-        private long sequenceNumber;
-
-        public byte[] getData() { return data; }
-        public void setData(byte[] data) { this.data = data; }
-        public long getTimestamp() { return timestamp; }
-        public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
-        public long getSequenceNumber() { return sequenceNumber; }
-        public void setSequenceNumber(long sequenceNumber) { this.sequenceNumber = sequenceNumber; }
-    }
+        private final byte[] data;
+        private final FrameMemoryPool.Block block;
+        private final int size;
+        private final long timestamp;
+        private final long sequenceNumber;
+        private final boolean keyframe;
 
-    /**
-     * Метаданные потока
-     */
-    private static class StreamMetadata {
-        private long currentSize = 0;
-        private long lastSequenceNumber = 0;
-        private long lastAccessTime = System.currentTimeMillis();
+        public VideoFrame(byte[] data, long timestamp, long sequenceNumber, boolean keyframe) {
+            this.data = data;
+            this.block = null;
+            this.size = data.length;
+            this.timestamp = timestamp;
+            this.sequenceNumber = sequenceNumber;
+            this.keyframe = keyframe;
+        }
 
-        public long getNextSequenceNumber() {
-            return ++lastSequenceNumber;
+        public VideoFrame(FrameMemoryPool.Block block, long timestamp, long sequenceNumber, boolean keyframe) {
+            this.data = null;
+            this.block = block;
+            this.size = block.getLength();
+            this.timestamp = timestamp;
+            this.sequenceNumber = sequenceNumber;
+            this.keyframe = keyframe;
         }
 
-        public void addFrame(long size) {
-            currentSize += size;
-            lastAccessTime = System.currentTimeMillis();
+        /**
+         * Копия данных фрейма (для кучи - сам массив), или null если off-heap блок
+         * уже освобожден вытеснением.
+         */
+        public byte[] readData() {
+            if (block == null) {
+                return data;
+            }
+            if (!block.retain()) {
+                return null;
+            }
+            try {
+                return block.toByteArray();
+            } finally {
+                block.release();
+            }
         }
 
-        public void removeFrame(long size) {
-            currentSize -= size;
-            lastAccessTime = System.currentTimeMillis();
+        /**
+         * Возвращает off-heap блок в пул; вызывается владельцем (кольцом) один раз.
+         */
+        void release() {
+            if (block != null) {
+                block.release();
+            }
         }
 
-        public long getCurrentSize() { return currentSize; }
-        public long getLastSequenceNumber() { return lastSequenceNumber; }
-        public long getLastAccessTime() { return lastAccessTime; }
+        public int getSize() { return size; }
+        public long getTimestamp() { return timestamp; }
+        public long getSequenceNumber() { return sequenceNumber; }
+        public boolean isKeyframe() { return keyframe; }
+    }
+
+    /**
+     * Где хранятся данные фреймов
+     */
+    public enum StorageMode {
+        HEAP, OFF_HEAP
     }
 
     /**
@@ -252,6 +332,7 @@ public class VideoStreamBuffer {
         private int frameCount;
         private long totalSizeBytes;
         private long lastSequenceNumber;
+        private long lastKeyframeSequenceNumber;
 
         public String getConferenceId() { return conferenceId; }
         public void setConferenceId(String conferenceId) { this.conferenceId = conferenceId; }
@@ -263,5 +344,7 @@ public class VideoStreamBuffer {
         public void setTotalSizeBytes(long totalSizeBytes) { this.totalSizeBytes = totalSizeBytes; }
         public long getLastSequenceNumber() { return lastSequenceNumber; }
         public void setLastSequenceNumber(long lastSequenceNumber) { this.lastSequenceNumber = lastSequenceNumber; }
+        public long getLastKeyframeSequenceNumber() { return lastKeyframeSequenceNumber; }
+        public void setLastKeyframeSequenceNumber(long lastKeyframeSequenceNumber) { this.lastKeyframeSequenceNumber = lastKeyframeSequenceNumber; }
     }
 }
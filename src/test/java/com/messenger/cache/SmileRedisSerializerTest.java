@@ -0,0 +1,121 @@
+package com.messenger.cache;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.messenger.dto.ChatDTOs.ChatDTO;
+import com.messenger.dto.ChatDTOs.ChatParticipantDTO;
+import com.messenger.dto.MessageDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SmileRedisSerializerTest {
+
+    private static final JavaType CHAT_LIST = TypeFactory.defaultInstance()
+            .constructCollectionType(List.class, ChatDTO.class);
+
+    @Test
+    void testRoundTripWithoutCompression() {
+        SmileRedisSerializer serializer = new SmileRedisSerializer(CHAT_LIST, 0);
+        List<ChatDTO> chats = chats(3);
+
+        byte[] bytes = serializer.serialize(chats);
+
+        assertEquals(SmileRedisSerializer.FORMAT_PLAIN, bytes[0]);
+        assertEquals(chats, serializer.deserialize(bytes));
+    }
+
+    @Test
+    void testRoundTripWithCompression() {
+        SmileRedisSerializer serializer = new SmileRedisSerializer(CHAT_LIST, 256);
+        List<ChatDTO> chats = chats(50);
+
+        byte[] bytes = serializer.serialize(chats);
+
+        assertEquals(SmileRedisSerializer.FORMAT_LZ4, bytes[0]);
+        assertEquals(chats, serializer.deserialize(bytes));
+    }
+
+    @Test
+    void testSmallerThanTypedJson() {
+        List<ChatDTO> chats = chats(50);
+        // Same shape as the JSON values stored today: class names on every object
+        GenericJackson2JsonRedisSerializer json = new GenericJackson2JsonRedisSerializer(new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .activateDefaultTyping(BasicPolymorphicTypeValidator.builder().allowIfBaseType(Object.class).build(),
+                        ObjectMapper.DefaultTyping.EVERYTHING));
+
+        int jsonSize = json.serialize(chats).length;
+        int binarySize = new SmileRedisSerializer(CHAT_LIST, 1024).serialize(chats).length;
+
+        assertTrue(binarySize < jsonSize / 2, "binary " + binarySize + " vs json " + jsonSize);
+    }
+
+    @Test
+    void testNullAndEmpty() {
+        SmileRedisSerializer serializer = new SmileRedisSerializer(CHAT_LIST, 1024);
+
+        assertEquals(0, serializer.serialize(null).length);
+        assertNull(serializer.deserialize(new byte[0]));
+        assertNull(serializer.deserialize(null));
+    }
+
+    @Test
+    void testRejectsLegacyJson() {
+        SmileRedisSerializer serializer = new SmileRedisSerializer(CHAT_LIST, 1024);
+
+        assertThrows(SerializationException.class, () -> serializer.deserialize("[{}]".getBytes()));
+    }
+
+    private List<ChatDTO> chats(int count) {
+        List<ChatDTO> chats = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            UUID chatId = UUID.randomUUID();
+            chats.add(ChatDTO.builder()
+                    .id(chatId)
+                    .chatName("chat-" + i)
+                    .chatType("GROUP")
+                    .createdBy("alice")
+                    .createdAt(LocalDateTime.of(2024, 1, 1, 12, 0).plusMinutes(i))
+                    .participants(List.of(
+                            participant("alice"),
+                            participant("bob")))
+                    .memberCount(2)
+                    .lastMessage(MessageDTO.builder()
+                            .id(UUID.randomUUID())
+                            .chatId(chatId)
+                            .seq((long) i)
+                            .senderId(UUID.randomUUID().toString())
+                            .senderUsername("bob")
+                            .messageType("TEXT")
+                            .encryptedContent("ciphertext-" + i)
+                            .encryptionIv("iv-" + i)
+                            .createdAt(LocalDateTime.of(2024, 1, 2, 8, 30))
+                            .build())
+                    .unreadCount((long) i)
+                    .isEncrypted(true)
+                    .build());
+        }
+        return chats;
+    }
+
+    private ChatParticipantDTO participant(String username) {
+        return ChatParticipantDTO.builder()
+                .userId(UUID.nameUUIDFromBytes(username.getBytes()).toString())
+                .username(username)
+                .isAdmin(false)
+                .joinedAt(LocalDateTime.of(2024, 1, 1, 0, 0))
+                .isOnline(true)
+                .build();
+    }
+}
@@ -0,0 +1,71 @@
+package com.messenger.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TwoTierCacheTest {
+
+    // Copies lists like a serializer would
+    private static final TwoTierCache.ValueCodec COPYING = new TwoTierCache.ValueCodec() {
+        @Override
+        public Object encode(Object value) {
+            return new ArrayList<>((List<?>) value);
+        }
+
+        @Override
+        public Object decode(Object stored) {
+            return new ArrayList<>((List<?>) stored);
+        }
+    };
+
+    @Test
+    void testL1HitsReturnIndependentCopies() {
+        TwoTierCache cache = cache(new ConcurrentMapCache("chats"));
+        cache.put("alice", List.of("a", "b"));
+
+        @SuppressWarnings("unchecked")
+        List<String> first = cache.get("alice", List.class);
+        first.add("mutated");
+
+        assertEquals(List.of("a", "b"), cache.get("alice", List.class));
+    }
+
+    @Test
+    void testFillRacingWithEvictIsDropped() {
+        AtomicReference<TwoTierCache> self = new AtomicReference<>();
+        ConcurrentMapCache remote = new ConcurrentMapCache("chats") {
+            @Override
+            public ValueWrapper get(Object key) {
+                ValueWrapper stale = super.get(key);
+                // Another node invalidates the key after L2 was read
+                self.get().evictLocal(List.of(key.toString()));
+                return stale;
+            }
+        };
+        remote.put("alice", List.of("stale"));
+        Cache<String, Object> local = Caffeine.newBuilder().maximumSize(100).build();
+        TwoTierCache cache = cache(local, remote);
+        self.set(cache);
+
+        assertEquals(List.of("stale"), cache.get("alice").get());
+        assertNull(local.getIfPresent("alice"));
+    }
+
+    private static TwoTierCache cache(ConcurrentMapCache remote) {
+        return cache(Caffeine.newBuilder().maximumSize(100).build(), remote);
+    }
+
+    private static TwoTierCache cache(Cache<String, Object> local, ConcurrentMapCache remote) {
+        return new TwoTierCache("chats", local, remote, COPYING, null, (cacheName, keys) -> { },
+                new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,57 @@
+package com.messenger.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MediaFrameTest {
+
+    @Test
+    void testEncodeDecodeRoundTrip() {
+        byte[] payload = {1, 2, 3, 4, 5};
+        MediaFrame frame = new MediaFrame(MediaFrame.FLAG_KEYFRAME, MediaFrame.Codec.VP8, 1234L, 42L,
+                "conf-1", "bob", ByteBuffer.wrap(payload));
+
+        MediaFrame decoded = MediaFrame.decode(frame.encode());
+
+        assertTrue(decoded.isKeyframe());
+        assertEquals(MediaFrame.Codec.VP8, decoded.getCodec());
+        assertEquals(1234L, decoded.getTimestamp());
+        assertEquals(42L, decoded.getSequenceNumber());
+        assertEquals("conf-1", decoded.getConferenceId());
+        assertEquals("bob", decoded.getPeer());
+        assertArrayEquals(payload, decoded.getPayloadBytes());
+    }
+
+    @Test
+    void testWithPeerKeepsPayload() {
+        MediaFrame frame = new MediaFrame(0, MediaFrame.Codec.H264, 1L, 2L, "conf-1", "bob",
+                ByteBuffer.wrap(new byte[]{9, 8, 7}));
+
+        MediaFrame forwarded = MediaFrame.decode(frame.withPeer("alice").encode());
+
+        assertEquals("alice", forwarded.getPeer());
+        assertFalse(forwarded.isKeyframe());
+        assertArrayEquals(new byte[]{9, 8, 7}, forwarded.getPayloadBytes());
+    }
+
+    @Test
+    void testMalformedFramesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> MediaFrame.decode(ByteBuffer.wrap(new byte[5])));
+
+        ByteBuffer encoded = new MediaFrame(0, MediaFrame.Codec.VP9, 1L, 2L, "conf-1", null,
+                ByteBuffer.allocate(0)).encode();
+        encoded.put(0, (byte) 7);
+        assertThrows(IllegalArgumentException.class, () -> MediaFrame.decode(encoded));
+    }
+
+    @Test
+    void testCodecFromName() {
+        assertEquals(MediaFrame.Codec.VP8, MediaFrame.Codec.fromName("video/VP8"));
+        assertEquals(MediaFrame.Codec.VP9, MediaFrame.Codec.fromName("vp09.00.10.08"));
+        assertEquals(MediaFrame.Codec.H264, MediaFrame.Codec.fromName("avc1.42e01f"));
+        assertEquals(MediaFrame.Codec.UNKNOWN, MediaFrame.Codec.fromName(null));
+    }
+}
@@ -0,0 +1,95 @@
+package com.messenger.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GcraRateLimiterTest {
+
+    @Test
+    void testBurstUpToLimitThenReject() {
+        AtomicLong clock = new AtomicLong();
+        GcraRateLimiter limiter = new GcraRateLimiter(5, Duration.ofSeconds(5), 64, clock::get);
+
+        for (int i = 4; i >= 0; i--) {
+            assertEquals(i, limiter.tryAcquire("1.2.3.4"));
+        }
+        long rejected = limiter.tryAcquire("1.2.3.4");
+        assertFalse(GcraRateLimiter.isAllowed(rejected));
+        assertEquals(1000, GcraRateLimiter.retryAfterMillis(rejected));
+
+        // Other keys have their own bucket
+        assertTrue(GcraRateLimiter.isAllowed(limiter.tryAcquire("5.6.7.8")));
+    }
+
+    @Test
+    void testRefillsOneRequestPerInterval() {
+        AtomicLong clock = new AtomicLong();
+        GcraRateLimiter limiter = new GcraRateLimiter(5, Duration.ofSeconds(5), 64, clock::get);
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire("key");
+        }
+        assertFalse(GcraRateLimiter.isAllowed(limiter.tryAcquire("key")));
+
+        clock.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertEquals(0, limiter.tryAcquire("key"));
+        assertFalse(GcraRateLimiter.isAllowed(limiter.tryAcquire("key")));
+
+        // A full window later the bucket is full again
+        clock.addAndGet(Duration.ofSeconds(5).toNanos());
+        assertEquals(4, limiter.tryAcquire("key"));
+    }
+
+    @Test
+    void testTableStaysBoundedUnderManyKeys() {
+        AtomicLong clock = new AtomicLong();
+        GcraRateLimiter limiter = new GcraRateLimiter(10, Duration.ofMinutes(1), 1000, clock::get);
+        assertEquals(1024, limiter.getCapacity());
+
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(GcraRateLimiter.isAllowed(limiter.tryAcquire("10.0." + (i >> 8) + "." + (i & 255))));
+        }
+        assertEquals(1024, limiter.getCapacity());
+        assertTrue(limiter.getActiveEvictions() > 0);
+    }
+
+    @Test
+    void testConcurrentAcquireNeverExceedsLimit() throws Exception {
+        AtomicLong clock = new AtomicLong();
+        GcraRateLimiter limiter = new GcraRateLimiter(1000, Duration.ofHours(1), 64, clock::get);
+        AtomicInteger allowed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < 500; i++) {
+                    if (GcraRateLimiter.isAllowed(limiter.tryAcquire("shared"))) {
+                        allowed.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1000, allowed.get());
+    }
+}
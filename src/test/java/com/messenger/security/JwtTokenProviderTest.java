@@ -1,8 +1,11 @@
 package com.messenger.security;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.security.Keys;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.test.util.ReflectionTestUtils;
@@ -10,6 +13,8 @@ import org.springframework.test.util.ReflectionTestUtils;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -74,6 +79,36 @@ class JwtTokenProviderTest {
         assertEquals("device123", deviceId);
     }
 
+    @Test
+    void testParseClaims() {
+        String token = jwtTokenProvider.generateTokenForDevice("testuser", "device123");
+        Claims claims = jwtTokenProvider.parseClaims(token);
+        assertEquals("testuser", claims.getSubject());
+        assertEquals("device123", claims.get("deviceId", String.class));
+        assertTrue(claims.getExpiration().after(new Date()));
+
+        assertThrows(JwtException.class, () -> jwtTokenProvider.parseClaims(token + "x"));
+    }
+
+    @Test
+    void testUserDetailsFromIdentityClaims() {
+        UUID userId = UUID.randomUUID();
+        String token = jwtTokenProvider.generateToken("testuser", userId,
+                List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        Claims claims = jwtTokenProvider.parseClaims(token);
+        assertNotNull(claims.getId());
+
+        JwtUserDetails userDetails = jwtTokenProvider.toUserDetails(claims);
+        assertNotNull(userDetails);
+        assertEquals(userId, userDetails.getUserId());
+        assertEquals("testuser", userDetails.getUsername());
+        assertEquals("ROLE_USER", userDetails.getAuthorities().iterator().next().getAuthority());
+
+        // Tokens without identity claims need a user lookup
+        String plainToken = jwtTokenProvider.generateToken(new HashMap<>(), "testuser");
+        assertNull(jwtTokenProvider.toUserDetails(jwtTokenProvider.parseClaims(plainToken)));
+    }
+
     @Test
     void testGenerateRefreshToken() {
         String token = jwtTokenProvider.generateRefreshToken("testuser");
@@ -0,0 +1,83 @@
+package com.messenger.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class RedisRateLimiterTest {
+
+    private StringRedisTemplate redisTemplate;
+    private RedisRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        limiter = new RedisRateLimiter("api", 10, Duration.ofSeconds(10), 5, Duration.ofSeconds(1),
+                Duration.ofSeconds(5), 1000, new GcraRateLimiter(10, Duration.ofSeconds(10), 64),
+                redisTemplate, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void testHandsOutLeaseLocally() {
+        // Lease of 5 tokens, 5 more left in the shared bucket
+        givenRedisReturns(List.of(5L, 0L, 5L));
+
+        for (int left = 9; left >= 5; left--) {
+            assertEquals(left, limiter.tryAcquire("1.2.3.4"));
+        }
+        verifyRedisCalls(1);
+
+        // Lease used up: the next request goes to Redis again
+        givenRedisReturns(List.of(5L, 0L, 0L));
+        assertEquals(4, limiter.tryAcquire("1.2.3.4"));
+        verifyRedisCalls(2);
+    }
+
+    @Test
+    void testCachesRejectionUntilRefill() {
+        givenRedisReturns(List.of(0L, 800L, 0L));
+
+        long rejected = limiter.tryAcquire("1.2.3.4");
+        assertFalse(GcraRateLimiter.isAllowed(rejected));
+        assertEquals(800, GcraRateLimiter.retryAfterMillis(rejected));
+
+        // Rejected locally, Redis is not asked again before the bucket refills
+        long again = limiter.tryAcquire("1.2.3.4");
+        assertFalse(GcraRateLimiter.isAllowed(again));
+        assertTrue(GcraRateLimiter.retryAfterMillis(again) <= 800);
+        verifyRedisCalls(1);
+    }
+
+    @Test
+    void testFallsBackToLocalLimitsWhenRedisFails() {
+        when(redisTemplate.execute(eq(RedisRateLimiter.ACQUIRE_SCRIPT), anyList(), any(Object[].class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        assertEquals(9, limiter.tryAcquire("1.2.3.4"));
+        // Redis is not retried during the pause, the local limiter keeps counting
+        assertEquals(8, limiter.tryAcquire("1.2.3.4"));
+        verifyRedisCalls(1);
+    }
+
+    private void givenRedisReturns(List<Long> result) {
+        when(redisTemplate.execute(eq(RedisRateLimiter.ACQUIRE_SCRIPT), anyList(), any(Object[].class)))
+                .thenReturn(result);
+    }
+
+    private void verifyRedisCalls(int times) {
+        verify(redisTemplate, times(times)).execute(eq(RedisRateLimiter.ACQUIRE_SCRIPT), anyList(),
+                any(Object[].class));
+    }
+}
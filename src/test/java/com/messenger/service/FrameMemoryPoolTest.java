@@ -0,0 +1,64 @@
+package com.messenger.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameMemoryPoolTest {
+
+    @Test
+    void testSizeClasses() {
+        assertEquals(0, FrameMemoryPool.sizeClass(1));
+        assertEquals(0, FrameMemoryPool.sizeClass(1024));
+        assertEquals(1, FrameMemoryPool.sizeClass(1025));
+        assertEquals(10, FrameMemoryPool.sizeClass(1 << 20));
+        assertEquals(-1, FrameMemoryPool.sizeClass((1 << 20) + 1));
+    }
+
+    @Test
+    void testReleasedBlockIsReusedAndCannotBeRetained() {
+        FrameMemoryPool pool = new FrameMemoryPool(4096);
+        FrameMemoryPool.Block block = pool.allocate(3000);
+        block.write(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        assertEquals(4096, pool.getReservedBytes());
+        assertNull(pool.allocate(100));
+        assertEquals(1, pool.getFailedAllocations());
+
+        block.release();
+        assertFalse(block.retain());
+        assertEquals(0, pool.getUsedBytes());
+
+        // Свободный блок другого класса отдается, чтобы уложиться в бюджет
+        FrameMemoryPool.Block small = pool.allocate(100);
+        assertNotNull(small);
+        assertEquals(1024, pool.getReservedBytes());
+        small.release();
+    }
+
+    @Test
+    void testRingReleasesEvictedFramesToPool() {
+        FrameMemoryPool pool = new FrameMemoryPool(4 * 1024);
+        VideoFrameRing ring = new VideoFrameRing(100, 1 << 20, pool);
+        for (long i = 1; i <= 10; i++) {
+            assertEquals(i, ring.append(ByteBuffer.allocate(1000).putLong(0, i), i));
+        }
+
+        // Бюджет на 4 блока: новые фреймы вытесняют старые своего потока
+        assertEquals(4, ring.getFrameCount());
+        assertEquals(4000, pool.getUsedBytes());
+        byte[][] frames = ring.getFrames(0);
+        assertEquals(7, ByteBuffer.wrap(frames[0]).getLong());
+        assertEquals(10, ByteBuffer.wrap(frames[3]).getLong());
+
+        VideoFrameRing other = new VideoFrameRing(100, 1 << 20, pool);
+        assertEquals(-1, other.append(ByteBuffer.allocate(1000), 1));
+        assertEquals(1, other.getDroppedFrames());
+
+        ring.close();
+        assertEquals(0, pool.getUsedBytes());
+        assertEquals(-1, ring.append(new byte[10], 11));
+        assertEquals(1, other.append(ByteBuffer.allocate(1000), 2));
+    }
+}
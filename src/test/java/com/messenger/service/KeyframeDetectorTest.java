@@ -0,0 +1,60 @@
+package com.messenger.service;
+
+import com.messenger.dto.MediaFrame;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyframeDetectorTest {
+
+    @Test
+    void testVp8() {
+        byte[] key = {0x10, 0x02, 0x00, (byte) 0x9d, 0x01, 0x2a, 0x40, 0x01, (byte) 0xf0, 0x00};
+        byte[] inter = {0x31, 0x02, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00};
+        assertTrue(isKeyframe(MediaFrame.Codec.VP8, key));
+        assertFalse(isKeyframe(MediaFrame.Codec.VP8, inter));
+    }
+
+    @Test
+    void testVp9() {
+        // frame_marker 10, профиль 0, show_existing_frame 0, frame_type 0/1
+        assertTrue(isKeyframe(MediaFrame.Codec.VP9, new byte[]{(byte) 0x82, 0x49, (byte) 0x83, 0x42}));
+        assertFalse(isKeyframe(MediaFrame.Codec.VP9, new byte[]{(byte) 0x86, 0x00}));
+        // профиль 3: после профиля идет reserved_zero
+        assertTrue(isKeyframe(MediaFrame.Codec.VP9, new byte[]{(byte) 0xb0, 0x49}));
+        assertFalse(isKeyframe(MediaFrame.Codec.VP9, new byte[]{(byte) 0xb2, 0x00}));
+    }
+
+    @Test
+    void testH264AnnexBAndAvc() {
+        // SPS, PPS, IDR
+        byte[] annexB = {0, 0, 0, 1, 0x67, 0x42, 0, 0, 1, 0x68, (byte) 0xce, 0, 0, 1, 0x65, (byte) 0x88};
+        byte[] annexBInter = {0, 0, 0, 1, 0x41, (byte) 0x9a, 0x02};
+        byte[] avc = {0, 0, 0, 2, 0x67, 0x42, 0, 0, 0, 2, 0x65, (byte) 0x88};
+        byte[] avcInter = {0, 0, 0, 2, 0x41, (byte) 0x9a};
+        assertTrue(isKeyframe(MediaFrame.Codec.H264, annexB));
+        assertFalse(isKeyframe(MediaFrame.Codec.H264, annexBInter));
+        assertTrue(isKeyframe(MediaFrame.Codec.H264, avc));
+        assertFalse(isKeyframe(MediaFrame.Codec.H264, avcInter));
+    }
+
+    @Test
+    void testAv1AndUnknown() {
+        // temporal delimiter, затем sequence header
+        byte[] key = {0x12, 0x00, 0x0a, 0x02, 0x00, 0x00};
+        // temporal delimiter, затем frame
+        byte[] inter = {0x12, 0x00, 0x32, 0x01, 0x00};
+        assertTrue(isKeyframe(MediaFrame.Codec.AV1, key));
+        assertFalse(isKeyframe(MediaFrame.Codec.AV1, inter));
+        assertFalse(isKeyframe(MediaFrame.Codec.UNKNOWN, key));
+    }
+
+    private static boolean isKeyframe(MediaFrame.Codec codec, byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        boolean result = KeyframeDetector.isKeyframe(codec, buffer);
+        assertEquals(0, buffer.position());
+        return result;
+    }
+}
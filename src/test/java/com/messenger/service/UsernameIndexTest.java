@@ -0,0 +1,88 @@
+package com.messenger.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UsernameIndexTest {
+
+    @Test
+    void testPrefixSearchIsCaseInsensitiveAndOrdered() {
+        UsernameIndex index = new UsernameIndex(100, 4);
+        index.load(matches("bob", "Alice", "alex", "albert", "carol"));
+
+        assertEquals(List.of("albert", "alex", "Alice"), usernames(index.search("AL", 10)));
+        assertEquals(List.of("bob"), usernames(index.search("b", 10)));
+        assertTrue(index.search("z", 10).isEmpty());
+    }
+
+    @Test
+    void testLimit() {
+        UsernameIndex index = new UsernameIndex(100, 4);
+        index.load(matches("anna", "anton", "andrew", "ann"));
+
+        assertEquals(List.of("andrew", "ann"), usernames(index.search("an", 2)));
+    }
+
+    @Test
+    void testAddedUsersAreFoundBeforeAndAfterMerge() {
+        UsernameIndex index = new UsernameIndex(100, 3);
+        index.load(matches("dave", "diana"));
+
+        index.add(UUID.randomUUID(), "denis");
+        assertEquals(List.of("dave", "denis", "diana"), usernames(index.search("d", 10)));
+
+        // Third pending entry triggers a merge into the sorted arrays
+        index.add(UUID.randomUUID(), "Dmitry");
+        index.add(UUID.randomUUID(), "dan");
+        assertEquals(List.of("dan", "dave", "denis", "diana", "Dmitry"), usernames(index.search("d", 10)));
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    void testCaseVariantsDoNotCollide() {
+        UsernameIndex index = new UsernameIndex(100, 10);
+        index.add(UUID.randomUUID(), "Eve");
+        index.add(UUID.randomUUID(), "eve");
+
+        assertEquals(2, index.search("eve", 10).size());
+    }
+
+    @Test
+    void testCapMarksIndexIncomplete() {
+        UsernameIndex index = new UsernameIndex(3, 10);
+        index.load(matches("a1", "a2", "a3"));
+        assertTrue(index.isComplete());
+
+        index.add(UUID.randomUUID(), "a4");
+
+        assertFalse(index.isComplete());
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void testLoadOverCap() {
+        UsernameIndex index = new UsernameIndex(2, 10);
+        index.load(matches("x", "y", "z"));
+
+        assertFalse(index.isComplete());
+        assertEquals(2, index.size());
+    }
+
+    private static List<UsernameIndex.Match> matches(String... usernames) {
+        List<UsernameIndex.Match> matches = new ArrayList<>();
+        for (String username : usernames) {
+            matches.add(new UsernameIndex.Match(UUID.randomUUID(), username));
+        }
+        return matches;
+    }
+
+    private static List<String> usernames(List<UsernameIndex.Match> matches) {
+        return matches.stream().map(UsernameIndex.Match::getUsername).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,126 @@
+package com.messenger.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VideoFrameRingTest {
+
+    @Test
+    void testKeepsLastCapacityFrames() {
+        VideoFrameRing ring = new VideoFrameRing(4, 1024);
+        for (long i = 1; i <= 10; i++) {
+            assertEquals(i, ring.append(frame(i), i));
+        }
+
+        assertEquals(4, ring.getFrameCount());
+        assertEquals(10, ring.getLastSequenceNumber());
+        assertSequences(ring.getFrames(0), 7, 8, 9, 10);
+        assertSequences(ring.getFrames(9), 9, 10);
+        assertSequences(ring.getLastFrames(2), 9, 10);
+        assertEquals(0, ring.getFrames(11).length);
+    }
+
+    @Test
+    void testEvictsBySize() {
+        VideoFrameRing ring = new VideoFrameRing(100, 32);
+        for (long i = 1; i <= 5; i++) {
+            ring.append(frame(i), i); // 8 bytes each
+        }
+
+        assertEquals(4, ring.getFrameCount());
+        assertEquals(32, ring.getSizeBytes());
+        assertSequences(ring.getFrames(0), 2, 3, 4, 5);
+    }
+
+    @Test
+    void testReadersSeeOrderedCompleteFramesWhileWriting() throws Exception {
+        VideoFrameRing ring = new VideoFrameRing(8, 1024);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                byte[][] frames = ring.getFrames(0);
+                long previous = 0;
+                for (byte[] data : frames) {
+                    long seq = ByteBuffer.wrap(data).getLong();
+                    if (seq <= previous) {
+                        failure.set("out of order: " + previous + " then " + seq);
+                    }
+                    previous = seq;
+                }
+                if (frames.length > 8) {
+                    failure.set("more frames than capacity: " + frames.length);
+                }
+            }
+        });
+        reader.start();
+        for (long i = 1; i <= 200_000; i++) {
+            ring.append(frame(i), i);
+        }
+        done.set(true);
+        reader.join();
+
+        assertNull(failure.get());
+        assertSequences(ring.getLastFrames(3), 199_998, 199_999, 200_000);
+    }
+
+    @Test
+    void testRecoveryStartsFromLatestKeyframe() {
+        VideoFrameRing ring = new VideoFrameRing(16, 1024);
+        for (long i = 1; i <= 10; i++) {
+            ring.append(frame(i), i, i == 1 || i == 6);
+        }
+
+        assertEquals(6, ring.getLatestKeyframe());
+        assertSequences(ring.getFrames(0), 6, 7, 8, 9, 10);
+        assertSequences(ring.getLastFrames(2), 6, 7, 8, 9, 10);
+        // Клиент уже получил кадры после ключевого - досылаем только недостающие
+        assertSequences(ring.getFrames(9), 9, 10);
+    }
+
+    @Test
+    void testEvictsWholeGops() {
+        VideoFrameRing ring = new VideoFrameRing(6, 1024);
+        for (long i = 1; i <= 7; i++) {
+            ring.append(frame(i), i, i == 1 || i == 4);
+        }
+
+        // Для кадра 7 вытеснена вся GOP 1-3, а не только кадр 1
+        assertEquals(4, ring.getFrameCount());
+        assertEquals(4, ring.getLatestKeyframe());
+
+        // Текущая GOP заполнила кольцо: оно очищается, дельта-кадры отбрасываются до ключевого
+        assertTrue(ring.append(frame(8), 8, false) > 0);
+        assertTrue(ring.append(frame(9), 9, false) > 0);
+        assertFalse(ring.takeKeyframeRequest());
+        assertEquals(-1, ring.append(frame(10), 10, false));
+        assertEquals(0, ring.getFrameCount());
+        assertEquals(0, ring.getLastFrames(30).length);
+        assertEquals(0, ring.getLatestKeyframe());
+        assertTrue(ring.takeKeyframeRequest());
+        assertFalse(ring.takeKeyframeRequest());
+        assertEquals(-1, ring.append(new byte[1], 11, false));
+        assertEquals(2, ring.getDroppedFrames());
+
+        long keyframe = ring.append(frame(12), 12, true);
+        assertSequences(ring.getLastFrames(30), 12);
+        assertEquals(keyframe, ring.getLatestKeyframe());
+    }
+
+    private static byte[] frame(long seq) {
+        return ByteBuffer.allocate(8).putLong(seq).array();
+    }
+
+    private static void assertSequences(byte[][] frames, long... expected) {
+        assertEquals(expected.length, frames.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], ByteBuffer.wrap(frames[i]).getLong());
+        }
+    }
+}
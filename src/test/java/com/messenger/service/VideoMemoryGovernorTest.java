@@ -0,0 +1,76 @@
+package com.messenger.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VideoMemoryGovernorTest {
+
+    @Test
+    void testLruEvictsLeastRecentlyUsedStreamFirst() throws Exception {
+        VideoMemoryGovernor governor = governor(VideoMemoryGovernor.EvictionPolicy.LRU, 0);
+        Map<String, VideoFrameRing> streams = new LinkedHashMap<>();
+        VideoFrameRing idle = stream(governor, streams, "c:idle", 3);
+        Thread.sleep(5);
+        VideoFrameRing busy = stream(governor, streams, "c:busy", 3);
+
+        // 7 KB из 8 KB - выше верхней отметки (6 KB), вытесняем до 4 KB
+        busy.append(new byte[1024], 0);
+        governor.enforce(streams);
+
+        assertEquals(0, idle.getFrameCount());
+        assertEquals(4, busy.getFrameCount());
+        assertEquals(4096, governor.usageCounter().get());
+    }
+
+    @Test
+    void testPriorityEvictsActiveSpeakerLast() throws Exception {
+        VideoMemoryGovernor governor = governor(VideoMemoryGovernor.EvictionPolicy.PRIORITY, 0);
+        Map<String, VideoFrameRing> streams = new LinkedHashMap<>();
+        VideoFrameRing speaker = stream(governor, streams, "c:speaker", 4);
+        Thread.sleep(5);
+        VideoFrameRing listener = stream(governor, streams, "c:listener", 3);
+        governor.markActiveSpeaker("c:speaker", true);
+
+        governor.enforce(streams);
+
+        assertEquals(4, speaker.getFrameCount());
+        assertEquals(0, listener.getFrameCount());
+    }
+
+    @Test
+    void testRepeatedEvictionRaisesPressure() {
+        VideoMemoryGovernor governor = governor(VideoMemoryGovernor.EvictionPolicy.OLDEST, 60_000);
+        Map<String, VideoFrameRing> streams = new LinkedHashMap<>();
+        assertTrue(governor.admits(false));
+
+        stream(governor, streams, "c:a", 7);
+        governor.enforce(streams);
+        assertEquals(VideoMemoryGovernor.Pressure.NORMAL, governor.getPressure());
+
+        stream(governor, streams, "c:b", 3);
+        governor.enforce(streams);
+        assertEquals(VideoMemoryGovernor.Pressure.HIGH, governor.getPressure());
+        assertTrue(governor.admits(true));
+        assertFalse(governor.admits(false));
+    }
+
+    private static VideoMemoryGovernor governor(VideoMemoryGovernor.EvictionPolicy policy, long pressureHoldMs) {
+        return new VideoMemoryGovernor(8 * 1024, 0.75, 0.5, policy, 60_000, pressureHoldMs,
+                new SimpleMeterRegistry());
+    }
+
+    private static VideoFrameRing stream(VideoMemoryGovernor governor, Map<String, VideoFrameRing> streams,
+                                         String key, int frames) {
+        VideoFrameRing ring = new VideoFrameRing(100, 1 << 20, null, governor.usageCounter());
+        for (int i = 0; i < frames; i++) {
+            ring.append(new byte[1024], i);
+        }
+        streams.put(key, ring);
+        return ring;
+    }
+}